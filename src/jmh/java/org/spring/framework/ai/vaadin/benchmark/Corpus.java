@@ -0,0 +1,40 @@
+package org.spring.framework.ai.vaadin.benchmark;
+
+import java.util.Random;
+
+/** Generates deterministic pseudo-English text for benchmarks. */
+final class Corpus {
+
+  private static final String[] WORDS = {
+    "spring", "boot", "bean", "context", "configuration", "vaadin", "component", "layout", "view",
+    "route", "service", "repository", "query", "vector", "store", "embedding", "document", "chunk",
+    "token", "model", "prompt", "advisor", "memory", "stream", "reactive", "flux", "mono", "thread",
+    "request", "response", "security", "session", "push", "client", "server", "property", "value",
+    "the", "a", "of", "to", "and", "in", "is", "for", "with", "on", "that", "this", "by", "from"
+  };
+
+  private Corpus() {}
+
+  /**
+   * Creates a text of roughly the given number of words, split into paragraphs.
+   *
+   * @param words The number of words
+   * @param seed Seed for the word sequence
+   * @return The generated text
+   */
+  static String text(int words, long seed) {
+    var random = new Random(seed);
+    var builder = new StringBuilder(words * 8);
+    for (int i = 1; i <= words; i++) {
+      builder.append(WORDS[random.nextInt(WORDS.length)]);
+      if (i % 120 == 0) {
+        builder.append(".\n\n");
+      } else if (i % 15 == 0) {
+        builder.append(". ");
+      } else {
+        builder.append(' ');
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,108 @@
+package org.spring.framework.ai.vaadin.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spring.framework.ai.vaadin.ui.component.ChatMessage;
+
+/**
+ * Measures streaming a long, code-heavy answer into a {@link ChatMessage}, token by token as
+ * before, and coalesced at markdown block boundaries.
+ *
+ * <p>Besides the time, it counts the updates sent to the client and the characters the client
+ * re-renders: in markdown mode the whole message is rendered again on every update, so this sums
+ * the length of the message at each update. Run with {@code -Djmh.args="MessageStreaming -prof
+ * gc"} to also get the server-side allocation per answer.
+ *
+ * <p>Tokens are replayed without delays, so coalesced updates are limited by the buffered size
+ * rather than by the update interval; with a real model the number of updates is lower still.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageStreamingBenchmark {
+
+  @Param({"20", "100"})
+  public int paragraphs;
+
+  private List<String> tokens;
+
+  /** Client-side work per answer. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class ClientUpdates {
+    public long updates;
+    public long renderedChars;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      updates = 0;
+      renderedChars = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    var answer = new StringBuilder();
+    for (int i = 0; i < paragraphs; i++) {
+      answer.append(Corpus.text(60, i)).append("\n\n");
+      if (i % 2 == 0) {
+        answer.append("```java\n");
+        for (int line = 0; line < 8; line++) {
+          answer.append("    var value").append(line).append(" = compute(").append(i);
+          answer.append(", ").append(line).append(");\n");
+        }
+        answer.append("```\n\n");
+      }
+    }
+
+    // Split into tokens of about four characters, like a model stream
+    tokens = new ArrayList<>();
+    for (int i = 0; i < answer.length(); i += 4) {
+      tokens.add(answer.substring(i, Math.min(answer.length(), i + 4)));
+    }
+  }
+
+  @Benchmark
+  public String perToken(ClientUpdates client) {
+    var message = new ChatMessage("Assistant", null, null);
+    for (var token : tokens) {
+      message.appendText(token);
+      client.updates++;
+      client.renderedChars += message.getText().length();
+    }
+    return message.getText();
+  }
+
+  @Benchmark
+  public String coalesced(ClientUpdates client) {
+    var message = new ChatMessage("Assistant", null, null);
+    for (var token : tokens) {
+      if (message.appendStreamingText(token)) {
+        client.updates++;
+        client.renderedChars += message.getText().length();
+      }
+    }
+    if (message.finishStreaming()) {
+      client.updates++;
+      client.renderedChars += message.getText().length();
+    }
+    return message.getText();
+  }
+}
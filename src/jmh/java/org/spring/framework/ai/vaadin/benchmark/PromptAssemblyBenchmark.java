@@ -0,0 +1,143 @@
+package org.spring.framework.ai.vaadin.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spring.framework.ai.vaadin.service.Assistant;
+import org.spring.framework.ai.vaadin.service.AssistantMetrics;
+import org.spring.framework.ai.vaadin.service.AttachmentExtractor;
+import org.spring.framework.ai.vaadin.service.AttachmentFile;
+import org.spring.framework.ai.vaadin.service.CachingEmbeddingModel;
+import org.spring.framework.ai.vaadin.service.ChatAttachmentIndex;
+import org.spring.framework.ai.vaadin.service.ContextPacker;
+import org.spring.framework.ai.vaadin.service.GenerationScheduler;
+import org.spring.framework.ai.vaadin.service.PromptLayoutAdvisor;
+import org.spring.framework.ai.vaadin.service.SpeculativeRetriever;
+import org.spring.framework.ai.vaadin.stub.HashingEmbeddingModel;
+import org.spring.framework.ai.vaadin.stub.StubChatModel;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Measures the full prompt assembly path of {@link Assistant#stream}: attachment processing, the
+ * advisor chain (memory, query rewrite, retrieval, context packing, prompt layout) and consuming
+ * the answer. The chat model answers instantly, so the result is the overhead added by the
+ * application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptAssemblyBenchmark {
+
+  // "large" exceeds the per-attachment token cap and goes through per-chat retrieval
+  @Param({"none", "text", "large"})
+  public String attachment;
+
+  @Param({"stable", "legacy"})
+  public String layout;
+
+  // Off in production by default; when on, the prefix is tokenized inline here, but off the
+  // request path in the application
+  @Param({"false", "true"})
+  public boolean prefixMetrics;
+
+  private Assistant assistant;
+  private List<AttachmentFile> attachments;
+
+  @Setup
+  public void setUp() {
+    var embeddingModel = new HashingEmbeddingModel();
+    var documentEmbeddingModel = new CachingEmbeddingModel(embeddingModel, 10000);
+    var vectorStore = SimpleVectorStore.builder(documentEmbeddingModel).build();
+    var chunks = new ArrayList<Document>();
+    for (int i = 0; i < 1000; i++) {
+      chunks.add(new Document(Corpus.text(200, i)));
+    }
+    vectorStore.add(chunks);
+
+    // Run blocking stages inline so that only the work itself is measured
+    var blockingScheduler = Schedulers.immediate();
+    var retriever =
+        new SpeculativeRetriever(
+            vectorStore, blockingScheduler, 12, false, 12, 0.9, Duration.ofSeconds(2));
+    var generationScheduler = new GenerationScheduler(Integer.MAX_VALUE, 100, Integer.MAX_VALUE);
+    var metrics =
+        new AssistantMetrics(
+            new SimpleMeterRegistry(), ObservationRegistry.NOOP, generationScheduler, retriever);
+
+    assistant =
+        new Assistant(
+            MessageWindowChatMemory.builder().build(),
+            ChatClient.builder(new StubChatModel()),
+            retriever,
+            new ContextPacker(documentEmbeddingModel, 0.7, 6, 2000),
+            new PromptLayoutAdvisor(
+                PromptLayoutAdvisor.Layout.valueOf(layout.toUpperCase(Locale.ROOT)),
+                prefixMetrics,
+                metrics,
+                blockingScheduler),
+            new AttachmentExtractor(),
+            // No similarity threshold, so the large attachment is always sent as excerpts
+            new ChatAttachmentIndex(embeddingModel, true, 200000, 6, 0.0),
+            generationScheduler,
+            blockingScheduler,
+            metrics,
+            List.of(),
+            1000,
+            8000,
+            16000,
+            32000);
+
+    attachments =
+        switch (attachment) {
+          case "text" -> List.of(textAttachment(2000));
+          case "large" -> List.of(textAttachment(50000));
+          default -> List.of();
+        };
+  }
+
+  private static AttachmentFile textAttachment(int words) {
+    return new AttachmentFile(
+        "notes.txt", "text/plain", Corpus.text(words, 4).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public List<String> stream() {
+    // A new chat per invocation keeps the memory from growing across iterations
+    var chatId = UUID.randomUUID().toString();
+    var answer =
+        assistant
+            .stream(
+                chatId,
+                "How do I configure a Spring bean for the vector store?",
+                attachments,
+                null)
+            .collectList()
+            .block();
+    assistant.closeChat(chatId);
+    return answer;
+  }
+}
@@ -0,0 +1,61 @@
+package org.spring.framework.ai.vaadin.benchmark;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spring.framework.ai.vaadin.ui.util.ImageUtils;
+
+/** Measures thumbnail creation for image attachments. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThumbnailBenchmark {
+
+  @Param({"png", "jpeg"})
+  public String format;
+
+  @Param({"1024", "4096"})
+  public int width;
+
+  private byte[] image;
+
+  @Setup
+  public void setUp() throws IOException {
+    var height = width * 3 / 4;
+    var bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    var graphics = bufferedImage.createGraphics();
+    var random = new Random(3);
+    for (int i = 0; i < 200; i++) {
+      graphics.setColor(new Color(random.nextInt(0xffffff)));
+      graphics.fillOval(random.nextInt(width), random.nextInt(height), width / 8, height / 8);
+    }
+    graphics.dispose();
+
+    var out = new ByteArrayOutputStream();
+    ImageIO.write(bufferedImage, format, out);
+    image = out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] createThumbnail() {
+    return ImageUtils.createThumbnail(image, "image/" + format, 160, 140);
+  }
+}
@@ -0,0 +1,103 @@
+package org.spring.framework.ai.vaadin.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spring.framework.ai.vaadin.service.AttachmentExtractor;
+import org.spring.framework.ai.vaadin.service.AttachmentFile;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * Measures text extraction with Tika: the full read used for RAG ingestion, and the token-capped
+ * extraction used for attachments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TikaExtractionBenchmark {
+
+  private static final int WORDS_PER_PAGE = 400;
+
+  @Param({"text", "pdf"})
+  public String format;
+
+  @Param({"1", "20"})
+  public int pages;
+
+  private final AttachmentExtractor attachmentExtractor = new AttachmentExtractor();
+  private byte[] data;
+
+  @Setup
+  public void setUp() throws IOException {
+    data =
+        format.equals("pdf")
+            ? pdf()
+            : Corpus.text(pages * WORDS_PER_PAGE, 1).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public List<Document> extract() {
+    return new TikaDocumentReader(new ByteArrayResource(data)).read();
+  }
+
+  @Benchmark
+  public AttachmentExtractor.Extraction extractCapped() {
+    var contentType = format.equals("pdf") ? "application/pdf" : "text/plain";
+    // About one page worth of tokens
+    return attachmentExtractor.extract(new AttachmentFile("document", contentType, data), 600);
+  }
+
+  private byte[] pdf() throws IOException {
+    try (var document = new PDDocument()) {
+      var font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+      for (int page = 0; page < pages; page++) {
+        var pdPage = new PDPage();
+        document.addPage(pdPage);
+        try (var content = new PDPageContentStream(document, pdPage)) {
+          content.beginText();
+          content.setFont(font, 10);
+          content.setLeading(12);
+          content.newLineAtOffset(40, 750);
+          var words = Corpus.text(WORDS_PER_PAGE, page).replace('\n', ' ').split(" ");
+          var line = new StringBuilder();
+          for (var word : words) {
+            line.append(word).append(' ');
+            if (line.length() > 90) {
+              content.showText(line.toString());
+              content.newLine();
+              line.setLength(0);
+            }
+          }
+          content.showText(line.toString());
+          content.endText();
+        }
+      }
+      var out = new ByteArrayOutputStream();
+      document.save(out);
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package org.spring.framework.ai.vaadin.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spring.framework.ai.vaadin.stub.HashingEmbeddingModel;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+
+/** Measures similarity search in the in-memory vector store configured in AiConfig. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+  private static final int WORDS_PER_CHUNK = 200;
+
+  @Param({"1000", "10000", "50000"})
+  public int corpusSize;
+
+  private SimpleVectorStore vectorStore;
+  private SearchRequest request;
+
+  @Setup
+  public void setUp() {
+    vectorStore = SimpleVectorStore.builder(new HashingEmbeddingModel()).build();
+
+    var batch = new ArrayList<Document>();
+    for (int i = 0; i < corpusSize; i++) {
+      batch.add(new Document(Corpus.text(WORDS_PER_CHUNK, i)));
+      if (batch.size() == 1000) {
+        vectorStore.add(batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      vectorStore.add(batch);
+    }
+
+    request =
+        SearchRequest.builder()
+            .query("How do I configure a Spring bean for the vector store?")
+            .topK(12)
+            .similarityThreshold(0.5)
+            .build();
+  }
+
+  @Benchmark
+  public List<Document> search() {
+    return vectorStore.similaritySearch(request);
+  }
+}
@@ -1,16 +1,85 @@
 package org.spring.framework.ai.vaadin;
 
+import io.micrometer.observation.ObservationRegistry;
+import java.util.List;
+import java.util.concurrent.Executors;
+import org.spring.framework.ai.vaadin.service.CachingEmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @Configuration
 public class AiConfig {
 
+  /** MCP client beans of the Spring AI auto-configuration; creating them starts the MCP servers. */
+  static final List<String> MCP_CLIENT_BEANS =
+      List.of("mcpSyncClients", "makeSyncClientsClosable");
+
+  /** Where blocking AI work (document parsing, embedding, query rewriting) is executed. */
+  public enum ExecutionMode {
+    /** A new virtual thread per task. */
+    VIRTUAL,
+    /** A dedicated bounded pool of platform threads. */
+    BOUNDED_ELASTIC
+  }
+
+  /**
+   * Creates the MCP clients on first use instead of during startup. Starting them spawns the
+   * configured server processes, which is not needed to serve the UI; {@link StartupWarmup}
+   * initializes them in the background once the application is ready.
+   */
+  @Bean
+  public static BeanFactoryPostProcessor lazyMcpClients() {
+    return beanFactory -> {
+      for (var name : MCP_CLIENT_BEANS) {
+        if (beanFactory.containsBeanDefinition(name)) {
+          beanFactory.getBeanDefinition(name).setLazyInit(true);
+        }
+      }
+    };
+  }
+
+  /**
+   * Embedding model of the vector store that remembers the embeddings of the ingested chunks, so
+   * that {@link org.spring.framework.ai.vaadin.service.ContextPacker} can reuse them. It is not a
+   * default candidate, so other users of {@link EmbeddingModel} keep the plain model.
+   */
+  @Bean(defaultCandidate = false)
+  public CachingEmbeddingModel documentEmbeddingModel(
+      EmbeddingModel embeddingModel,
+      @Value("${app.rag.mmr.embedding-cache-size:10000}") int cacheSize) {
+    return new CachingEmbeddingModel(embeddingModel, cacheSize);
+  }
+
   @Bean
-  public VectorStore vectorStore(EmbeddingModel embeddingModel) {
-    return SimpleVectorStore.builder(embeddingModel).build();
+  public VectorStore vectorStore(
+      @Qualifier("documentEmbeddingModel") EmbeddingModel embeddingModel,
+      ObjectProvider<ObservationRegistry> observationRegistry) {
+    return SimpleVectorStore.builder(embeddingModel)
+        .observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+        .build();
+  }
+
+  @Bean(destroyMethod = "dispose")
+  public Scheduler blockingScheduler(
+      @Value("${app.execution.mode:virtual}") ExecutionMode mode,
+      @Value("${app.execution.bounded-elastic.thread-cap:64}") int threadCap,
+      @Value("${app.execution.bounded-elastic.queue-cap:10000}") int queueCap) {
+    return switch (mode) {
+      case VIRTUAL ->
+          Schedulers.fromExecutorService(
+              Executors.newThreadPerTaskExecutor(
+                  Thread.ofVirtual().name("ai-blocking-", 0).factory()),
+              "ai-blocking");
+      case BOUNDED_ELASTIC -> Schedulers.newBoundedElastic(threadCap, queueCap, "ai-blocking");
+    };
   }
 }
@@ -0,0 +1,78 @@
+package org.spring.framework.ai.vaadin;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.stream.Collectors;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs virtual threads that stay pinned to their carrier thread for longer than a threshold, for
+ * example while blocking inside a synchronized block. Uses the JDK Flight Recorder event stream, so
+ * no JVM flags are needed.
+ *
+ * <p>The monitor is switched on at runtime rather than with a bean condition, which an AOT build
+ * would evaluate at build time.
+ */
+@Component
+public class PinnedThreadMonitor {
+
+  private static final Logger log = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+  private static final int STACK_DEPTH = 8;
+
+  private final boolean enabled;
+  private final Duration threshold;
+  private RecordingStream recordingStream;
+
+  public PinnedThreadMonitor(
+      @Value("${app.execution.pinning-detection.enabled:false}") boolean enabled,
+      @Value("${app.execution.pinning-detection.threshold:20ms}") Duration threshold) {
+    this.enabled = enabled;
+    this.threshold = threshold;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    recordingStream = new RecordingStream();
+    recordingStream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+    recordingStream.onEvent("jdk.VirtualThreadPinned", this::logPinnedThread);
+    recordingStream.startAsync();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (recordingStream != null) {
+      recordingStream.close();
+    }
+  }
+
+  private void logPinnedThread(RecordedEvent event) {
+    var stackTrace =
+        event.getStackTrace() == null
+            ? "  <no stack trace>"
+            : event.getStackTrace().getFrames().stream()
+                .limit(STACK_DEPTH)
+                .map(
+                    frame ->
+                        "  at "
+                            + frame.getMethod().getType().getName()
+                            + "."
+                            + frame.getMethod().getName()
+                            + ":"
+                            + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    log.warn(
+        "Virtual thread {} was pinned for {} ms\n{}",
+        event.getThread() != null ? event.getThread().getJavaName() : "<unknown>",
+        event.getDuration().toMillis(),
+        stackTrace);
+  }
+}
@@ -11,7 +11,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 @Theme("spring-ai-vaadin")
 public class SpringAiVaadinApplication implements AppShellConfigurator {
 
+  private static final String BOUNDED_ELASTIC_ON_VIRTUAL_THREADS =
+      "reactor.schedulers.defaultBoundedElasticOnVirtualThreads";
+
   public static void main(String[] args) {
+    // Spring AI executes tool calls (e.g. MCP) of streaming requests on Reactor's default
+    // boundedElastic scheduler. Back it with virtual threads unless configured otherwise.
+    if (System.getProperty(BOUNDED_ELASTIC_ON_VIRTUAL_THREADS) == null) {
+      System.setProperty(BOUNDED_ELASTIC_ON_VIRTUAL_THREADS, "true");
+    }
     SpringApplication.run(SpringAiVaadinApplication.class, args);
   }
 }
@@ -0,0 +1,51 @@
+package org.spring.framework.ai.vaadin;
+
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the time from JVM start to the first request handled by Vaadin as {@code
+ * application.first.request.time}, next to the {@code application.started.time} and {@code
+ * application.ready.time} metrics published by Spring Boot.
+ */
+@Component
+public class StartupTimeMetrics implements VaadinServiceInitListener {
+
+  private static final Logger log = LoggerFactory.getLogger(StartupTimeMetrics.class);
+
+  private final MeterRegistry meterRegistry;
+  private final AtomicBoolean recorded = new AtomicBoolean();
+
+  public StartupTimeMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void serviceInit(ServiceInitEvent event) {
+    event.addRequestHandler(
+        (session, request, response) -> {
+          if (recorded.compareAndSet(false, true)) {
+            recordFirstRequest();
+          }
+          // Never handles the request itself
+          return false;
+        });
+  }
+
+  private void recordFirstRequest() {
+    var sinceJvmStart = ManagementFactory.getRuntimeMXBean().getUptime();
+    TimeGauge.builder(
+            "application.first.request.time", () -> sinceJvmStart, TimeUnit.MILLISECONDS)
+        .description("Time from JVM start to the first request handled by the application")
+        .register(meterRegistry);
+    log.info("First request handled {} ms after JVM start", sinceJvmStart);
+  }
+}
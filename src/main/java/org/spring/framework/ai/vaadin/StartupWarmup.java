@@ -0,0 +1,75 @@
+package org.spring.framework.ai.vaadin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spring.framework.ai.vaadin.service.AttachmentExtractor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Initializes components that are slow to start but not needed to serve the UI, in the background
+ * once the application is ready: the MCP clients, which spawn their server processes, and the Tika
+ * parsers. Readiness is not gated on them; a request that needs them first simply initializes them
+ * itself.
+ *
+ * <p>The warm-up is switched off at runtime rather than with a bean condition, which an AOT build
+ * would evaluate at build time.
+ */
+@Component
+public class StartupWarmup {
+
+  private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+  private final ConfigurableListableBeanFactory beanFactory;
+  private final AttachmentExtractor attachmentExtractor;
+  private final Scheduler blockingScheduler;
+  private final boolean enabled;
+
+  public StartupWarmup(
+      ConfigurableListableBeanFactory beanFactory,
+      AttachmentExtractor attachmentExtractor,
+      Scheduler blockingScheduler,
+      @Value("${app.startup.warmup.enabled:true}") boolean enabled) {
+    this.beanFactory = beanFactory;
+    this.attachmentExtractor = attachmentExtractor;
+    this.blockingScheduler = blockingScheduler;
+    this.enabled = enabled;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    if (!enabled) {
+      return;
+    }
+    blockingScheduler.schedule(this::initializeMcpClients);
+    blockingScheduler.schedule(this::initializeTika);
+  }
+
+  private void initializeMcpClients() {
+    var start = System.nanoTime();
+    try {
+      for (var name : AiConfig.MCP_CLIENT_BEANS) {
+        if (beanFactory.containsBean(name)) {
+          beanFactory.getBean(name);
+        }
+      }
+      log.info("MCP clients initialized in {} ms", (System.nanoTime() - start) / 1_000_000);
+    } catch (RuntimeException e) {
+      log.warn("MCP clients failed to initialize, retrying on first use", e);
+    }
+  }
+
+  private void initializeTika() {
+    var start = System.nanoTime();
+    try {
+      attachmentExtractor.warmUp();
+      log.info("Tika initialized in {} ms", (System.nanoTime() - start) / 1_000_000);
+    } catch (RuntimeException e) {
+      log.warn("Tika failed to initialize", e);
+    }
+  }
+}
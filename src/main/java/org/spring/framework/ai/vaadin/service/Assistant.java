@@ -2,28 +2,42 @@ package org.spring.framework.ai.vaadin.service;
 
 import io.modelcontextprotocol.client.McpSyncClient;
 import jakarta.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SafeGuardAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.ai.content.Media;
-import org.springframework.ai.document.Document;
 import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
 import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
-import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.MimeType;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 @Service
 public class Assistant {
+  private static final Logger log = LoggerFactory.getLogger(Assistant.class);
+
   public record ChatOptions(String systemMessage, boolean useMcp) {}
 
   private final ChatOptions defaultOptions = new ChatOptions("", false);
@@ -31,6 +45,18 @@ public class Assistant {
   private final ChatClient chatClient;
   private final ChatMemory chatMemory;
   private final List<McpSyncClient> mcpSyncClients;
+  private final GenerationScheduler generationScheduler;
+  private final Scheduler blockingScheduler;
+  private final AssistantMetrics metrics;
+  private final PromptLayoutAdvisor promptLayoutAdvisor;
+  private final AttachmentExtractor attachmentExtractor;
+  private final ChatAttachmentIndex attachmentIndex;
+  private final Map<String, Deque<InlineAttachment>> chatAttachments = new ConcurrentHashMap<>();
+  private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+  private final int completionTokenReserve;
+  private final int maxTokensPerAttachment;
+  private final int maxTokensPerMessage;
+  private final int maxTokensPerChat;
 
   private static final String DEFAULT_SYSTEM =
       """
@@ -46,13 +72,42 @@ public class Assistant {
         </attachment>
         """;
 
+  private static final String ATTACHMENT_EXCERPT_TEMPLATE =
+      """
+        <attachment-excerpt filename="%s">
+                %s
+        </attachment-excerpt>
+        """;
+
   public Assistant(
       ChatMemory chatMemory,
       ChatClient.Builder builder,
-      VectorStore vectorStore,
-      List<McpSyncClient> mcpSyncClients) {
+      SpeculativeRetriever documentRetriever,
+      ContextPacker contextPacker,
+      PromptLayoutAdvisor promptLayoutAdvisor,
+      AttachmentExtractor attachmentExtractor,
+      ChatAttachmentIndex attachmentIndex,
+      GenerationScheduler generationScheduler,
+      Scheduler blockingScheduler,
+      AssistantMetrics metrics,
+      // Resolved on first use, so that the MCP servers are not started with the application
+      @Lazy List<McpSyncClient> mcpSyncClients,
+      @Value("${app.llm.scheduler.completion-token-reserve:1000}") int completionTokenReserve,
+      @Value("${app.attachments.max-tokens-per-attachment:8000}") int maxTokensPerAttachment,
+      @Value("${app.attachments.max-tokens-per-message:16000}") int maxTokensPerMessage,
+      @Value("${app.attachments.max-tokens-per-chat:32000}") int maxTokensPerChat) {
     this.chatMemory = chatMemory;
     this.mcpSyncClients = mcpSyncClients;
+    this.generationScheduler = generationScheduler;
+    this.blockingScheduler = blockingScheduler;
+    this.metrics = metrics;
+    this.promptLayoutAdvisor = promptLayoutAdvisor;
+    this.attachmentExtractor = attachmentExtractor;
+    this.attachmentIndex = attachmentIndex;
+    this.completionTokenReserve = completionTokenReserve;
+    this.maxTokensPerAttachment = maxTokensPerAttachment;
+    this.maxTokensPerMessage = maxTokensPerMessage;
+    this.maxTokensPerChat = maxTokensPerChat;
 
     chatClient =
         builder
@@ -62,29 +117,40 @@ public class Assistant {
                 new SafeGuardAdvisor(List.of("PHP")),
 
                 // Remember the conversation
-                MessageChatMemoryAdvisor.builder(chatMemory).build(),
+                MessageChatMemoryAdvisor.builder(chatMemory).scheduler(blockingScheduler).build(),
 
                 // Define RAG pipeline
                 // See
                 // https://docs.spring.io/spring-ai/reference/api/retrieval-augmented-generation.html#modules
                 RetrievalAugmentationAdvisor.builder()
                     .queryTransformers(
-                        // Rewrite the query for better search results
-                        RewriteQueryTransformer.builder()
-                            .chatClientBuilder(builder.build().mutate())
-                            .build())
+                        // Rewrite the query for better search results, unless the documents were
+                        // already retrieved for the draft while the user was typing
+                        documentRetriever.skipOnHit(
+                            RewriteQueryTransformer.builder()
+                                .chatClientBuilder(builder.build().mutate())
+                                .build()))
                     // Allow empty context (so you can try the assistant without context and
                     // compare)
                     .queryAugmenter(
                         ContextualQueryAugmenter.builder().allowEmptyContext(true).build())
 
-                    // Use the vector store to retrieve documents
-                    .documentRetriever(
-                        VectorStoreDocumentRetriever.builder()
-                            .similarityThreshold(0.50)
-                            .vectorStore(vectorStore)
-                            .build())
-                    .build())
+                    // Use the vector store to retrieve documents, reusing results that were
+                    // prefetched while the user was typing
+                    .documentRetriever(documentRetriever)
+
+                    // Drop redundant candidates and cap the context size
+                    .documentPostProcessors(contextPacker)
+
+                    // Run the blocking query rewrite, embedding and search off the caller thread
+                    .scheduler(blockingScheduler)
+                    .build(),
+
+                // Add the relevant parts of large attachments, without storing them in the memory
+                new AttachmentExcerptAdvisor(),
+
+                // Put the stable parts of the prompt first and measure prefix reuse
+                promptLayoutAdvisor)
             .build();
   }
 
@@ -93,33 +159,109 @@ public class Assistant {
       String userMessage,
       List<AttachmentFile> attachments,
       @Nullable ChatOptions options) {
+    return stream(chatId, userMessage, attachments, options, position -> {});
+  }
+
+  /**
+   * Streams the assistant's answer to a user message. The generation is queued in the {@link
+   * GenerationScheduler} and only starts once capacity is available.
+   *
+   * @param chatId The conversation the message belongs to
+   * @param userMessage The message text
+   * @param attachments Files attached to the message
+   * @param options Per-request options, or null for the defaults
+   * @param queueListener Listener notified of the queue position while the request waits
+   * @return The answer tokens
+   */
+  public Flux<String> stream(
+      String chatId,
+      String userMessage,
+      List<AttachmentFile> attachments,
+      @Nullable ChatOptions options,
+      GenerationScheduler.QueueListener queueListener) {
     if (options == null) {
       options = defaultOptions;
     }
 
     var system = options.systemMessage().isBlank() ? DEFAULT_SYSTEM : options.systemMessage();
+    var useMcp = options.useMcp();
+    var start = System.nanoTime();
 
-    var processedAttachments = processAttachments(attachments);
+    // Parse attachments on the blocking scheduler instead of the calling (UI) thread
+    var answer =
+        Mono.fromCallable(
+                () ->
+                    metrics.observe(
+                        "assistant.attachments.parse",
+                        () -> processAttachments(chatId, userMessage, attachments)))
+            .subscribeOn(blockingScheduler)
+            .flatMapMany(
+                processedAttachments ->
+                    schedule(
+                        chatId, userMessage, system, useMcp, processedAttachments, queueListener));
+
+    return metrics.instrumentStream(answer, start);
+  }
+
+  private Flux<String> schedule(
+      String chatId,
+      String userMessage,
+      String system,
+      boolean useMcp,
+      ProcessedAttachments processedAttachments,
+      GenerationScheduler.QueueListener queueListener) {
+    var stableLayout = promptLayoutAdvisor.getLayout() == PromptLayoutAdvisor.Layout.STABLE;
+    var documentContent = processedAttachments.documentContent();
+    String systemText;
+    String userText;
+    if (stableLayout) {
+      // The attachment block of the chat, kept after the system prompt, see processAttachments
+      systemText = system + documentContent;
+      userText = userMessage;
+    } else {
+      systemText = system;
+      userText = userMessage + documentContent;
+    }
+    var excerptContent = processedAttachments.excerptContent();
 
     var prompt =
         chatClient
             .prompt()
-            .system(system)
+            .system(systemText)
             .user(
                 u -> {
-                  u.text(userMessage + processedAttachments.documentContent());
+                  u.text(userText);
                   u.media(processedAttachments.mediaList().toArray(Media[]::new));
                 })
             .advisors(
                 a -> {
                   a.param(ChatMemory.CONVERSATION_ID, chatId);
+                  a.param(SpeculativeRetriever.USER_TEXT_KEY, userMessage);
+                  a.param(AttachmentExcerptAdvisor.EXCERPTS_KEY, excerptContent);
                 });
 
-    if (options.useMcp) {
+    if (useMcp && stableLayout) {
+      // Tool definitions are sent before the messages; keep their order deterministic
+      var toolCallbacks = new SyncMcpToolCallbackProvider(mcpSyncClients).getToolCallbacks();
+      Arrays.sort(toolCallbacks, Comparator.comparing(t -> t.getToolDefinition().name()));
+      prompt.toolCallbacks(toolCallbacks);
+    } else if (useMcp) {
       prompt.toolCallbacks(new SyncMcpToolCallbackProvider(mcpSyncClients));
     }
 
-    return prompt.stream().content();
+    // Rough estimate of the prompt plus a reserve for the completion. History and RAG context are
+    // not known until the advisors run.
+    var estimatedTokens =
+        tokenCountEstimator.estimate(systemText)
+            + tokenCountEstimator.estimate(userText)
+            + tokenCountEstimator.estimate(excerptContent)
+            + completionTokenReserve;
+
+    return generationScheduler.schedule(
+        chatId,
+        estimatedTokens,
+        () -> prompt.stream().content(),
+        queueListener);
   }
 
   public List<Message> getHistory(String chatId) {
@@ -138,13 +280,29 @@ public class Assistant {
         .toList();
   }
 
+  /**
+   * Drops the state kept for a chat: its history, attachments and prompt metrics.
+   *
+   * @param chatId The chat to close
+   */
   public void closeChat(String chatId) {
     chatMemory.clear(chatId);
+    chatAttachments.remove(chatId);
+    attachmentIndex.clear(chatId);
+    promptLayoutAdvisor.forget(chatId);
   }
 
-  private record ProcessedAttachments(String documentContent, List<Media> mediaList) {}
+  private record ProcessedAttachments(
+      String documentContent, String excerptContent, List<Media> mediaList) {}
+
+  private record InlineAttachment(String fileName, String text, int tokens) {
+    private String content() {
+      return String.format(ATTACHMENT_TEMPLATE, fileName, text);
+    }
+  }
 
-  private ProcessedAttachments processAttachments(List<AttachmentFile> attachments) {
+  private ProcessedAttachments processAttachments(
+      String chatId, String userMessage, List<AttachmentFile> attachments) {
     // Map text and pdf attachments as documents wrapped in <attachment> tags
     var documentList =
         attachments.stream()
@@ -154,15 +312,70 @@ public class Assistant {
                         || attachment.contentType().contains("pdf"))
             .toList();
 
-    var documentBuilder = new StringBuilder("\n");
-    documentList.forEach(
-        attachment -> {
-          var data = new ByteArrayResource(attachment.data());
-          var documents = new TikaDocumentReader(data).read();
-          var content = String.join("\n", documents.stream().map(Document::getText).toList());
-          documentBuilder.append(
-              String.format(ATTACHMENT_TEMPLATE, attachment.fileName(), content));
-        });
+    var budget = maxTokensPerMessage;
+    var extractedTokens = 0;
+    var sentTokens = 0;
+    var indexed = 0;
+    var inline = new ArrayList<InlineAttachment>();
+    for (var attachment : documentList) {
+      var cap = Math.min(maxTokensPerAttachment, budget);
+      // Only read past the inline cap as far as the attachment can still be indexed
+      var limit = attachmentIndex.isEnabled() ? Math.max(cap, attachmentIndex.getMaxTokens()) : cap;
+      var extraction = attachmentExtractor.extract(attachment, limit);
+      extractedTokens += extraction.tokens();
+
+      if (extraction.tokens() <= cap) {
+        inline.add(
+            new InlineAttachment(attachment.fileName(), extraction.text(), extraction.tokens()));
+        budget -= extraction.tokens();
+        sentTokens += extraction.tokens();
+        if (!extraction.complete()) {
+          log.info("Truncated {} to {} tokens", attachment.fileName(), extraction.tokens());
+        }
+      } else {
+        // Too large to send inline, send the relevant parts instead
+        attachmentIndex.add(chatId, attachment.fileName(), extraction.text());
+        indexed++;
+        if (!extraction.complete()) {
+          log.info("Indexed the first {} tokens of {}", extraction.tokens(), attachment.fileName());
+        }
+      }
+    }
+
+    String documentContent;
+    if (promptLayoutAdvisor.getLayout() == PromptLayoutAdvisor.Layout.STABLE) {
+      documentContent = appendToChatAttachments(chatId, inline);
+    } else {
+      documentContent =
+          inline.stream().map(InlineAttachment::content).collect(Collectors.joining("", "\n", ""));
+    }
+
+    // Add the parts of large attachments of this chat that are relevant to the message
+    var excerptBuilder = new StringBuilder();
+    var excerptBudget = Math.min(maxTokensPerAttachment, budget);
+    for (var excerpt : attachmentIndex.search(chatId, userMessage)) {
+      var tokens = tokenCountEstimator.estimate(excerpt.getText());
+      if (tokens > excerptBudget) {
+        break;
+      }
+      excerptBudget -= tokens;
+      sentTokens += tokens;
+      excerptBuilder.append(
+          String.format(
+              ATTACHMENT_EXCERPT_TEMPLATE,
+              excerpt.getMetadata().get(ChatAttachmentIndex.FILE_NAME),
+              excerpt.getText()));
+    }
+
+    if (!documentList.isEmpty() || !excerptBuilder.isEmpty()) {
+      metrics.recordAttachments(extractedTokens, sentTokens, indexed);
+      log.info(
+          "Attachments for chat {}: {} tokens extracted, {} tokens sent, {} indexed for retrieval",
+          chatId,
+          extractedTokens,
+          sentTokens,
+          indexed);
+    }
 
     // Map image attachments to Media objects
     var mediaList =
@@ -175,7 +388,48 @@ public class Assistant {
                         new ByteArrayResource(attachment.data())))
             .toList();
 
-    return new ProcessedAttachments(documentBuilder.toString(), mediaList);
+    return new ProcessedAttachments(documentContent, excerptBuilder.toString(), mediaList);
+  }
+
+  /**
+   * Appends attachments to the block the stable layout keeps after the system prompt. The block
+   * is append-only, so the prompt of an earlier turn stays a prefix of the next one, until it
+   * exceeds the per-chat cap: then the oldest attachments move to the attachment index and are
+   * sent as excerpts when relevant, like attachments that were too large to send inline.
+   *
+   * @param chatId The chat the attachments were sent in
+   * @param added The attachments of the current message that are sent inline
+   * @return The attachment block of the chat
+   */
+  private String appendToChatAttachments(String chatId, List<InlineAttachment> added) {
+    var block = chatAttachments.computeIfAbsent(chatId, k -> new ArrayDeque<>());
+    var evicted = new ArrayList<InlineAttachment>();
+    String content;
+    synchronized (block) {
+      block.addAll(added);
+      var tokens = block.stream().mapToInt(InlineAttachment::tokens).sum();
+      while (tokens > maxTokensPerChat) {
+        var oldest = block.poll();
+        tokens -= oldest.tokens();
+        evicted.add(oldest);
+      }
+      content =
+          block.isEmpty()
+              ? ""
+              : block.stream()
+                  .map(InlineAttachment::content)
+                  .collect(Collectors.joining("", "\n", ""));
+    }
+
+    for (var attachment : evicted) {
+      if (attachmentIndex.isEnabled()) {
+        attachmentIndex.add(chatId, attachment.fileName(), attachment.text());
+        log.info("Moved {} from the prompt to retrieval", attachment.fileName());
+      } else {
+        log.info("Dropped {} from the prompt", attachment.fileName());
+      }
+    }
+    return content;
   }
 
   public static record Attachment(String type, String key, String fileName, String url) {}
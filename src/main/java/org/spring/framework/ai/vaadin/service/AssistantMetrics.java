@@ -0,0 +1,278 @@
+package org.spring.framework.ai.vaadin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Metrics and observations for the chat and RAG paths.
+ *
+ * <p>Coarse stages (attachment parsing, ingestion) are recorded as observations, so they show up
+ * both as timers and as tracing spans. The per-token path only increments plain counters on the
+ * stream's own state object; meters are updated once when the stream ends.
+ *
+ * <p>Advisor stages, model calls, tool calls and vector store searches are observed by Spring AI
+ * itself once an {@link ObservationRegistry} is present.
+ */
+@Component
+public class AssistantMetrics {
+
+  private final ObservationRegistry observationRegistry;
+  private final Timer timeToFirstToken;
+  private final DistributionSummary tokensPerSecond;
+  private final Counter tokens;
+  private final AtomicInteger activeStreams = new AtomicInteger();
+  private final Counter ingestedChunks;
+  private final Counter ingestedTokens;
+  private final AtomicInteger vectorStoreChunks = new AtomicInteger();
+  private final Counter uiPushes;
+  private final DistributionSummary uiPushesPerStream;
+  private final Counter attachmentTokensExtracted;
+  private final Counter attachmentTokensSent;
+  private final Counter attachmentsIndexed;
+  private final Counter promptTokens;
+  private final Counter promptPrefixTokens;
+  private final DistributionSummary promptPrefixReuse;
+
+  public AssistantMetrics(
+      MeterRegistry meterRegistry,
+      ObservationRegistry observationRegistry,
+      GenerationScheduler generationScheduler,
+      SpeculativeRetriever speculativeRetriever) {
+    this.observationRegistry = observationRegistry;
+
+    timeToFirstToken =
+        Timer.builder("assistant.stream.ttft")
+            .description("Time from submitting a message to the first answer token")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+    tokensPerSecond =
+        DistributionSummary.builder("assistant.stream.tokens.rate")
+            .description("Tokens per second of each answer stream")
+            .baseUnit("tokens/s")
+            .register(meterRegistry);
+    tokens =
+        Counter.builder("assistant.stream.tokens")
+            .description("Answer tokens streamed")
+            .register(meterRegistry);
+    Gauge.builder("assistant.stream.active", activeStreams, AtomicInteger::get)
+        .description("Answer streams currently in progress")
+        .register(meterRegistry);
+
+    ingestedChunks =
+        Counter.builder("rag.ingestion.chunks")
+            .description("Chunks embedded into the vector store")
+            .register(meterRegistry);
+    ingestedTokens =
+        Counter.builder("rag.ingestion.tokens")
+            .description("Estimated tokens embedded into the vector store")
+            .register(meterRegistry);
+    Gauge.builder("rag.vectorstore.chunks", vectorStoreChunks, AtomicInteger::get)
+        .description("Chunks stored in the vector store")
+        .register(meterRegistry);
+
+    uiPushes =
+        Counter.builder("assistant.ui.pushes")
+            .description("UI updates pushed to browsers while streaming")
+            .register(meterRegistry);
+    uiPushesPerStream =
+        DistributionSummary.builder("assistant.ui.pushes.per.stream")
+            .description("UI updates pushed for a single answer")
+            .register(meterRegistry);
+
+    attachmentTokensExtracted =
+        Counter.builder("assistant.attachments.tokens.extracted")
+            .description("Tokens extracted from message attachments")
+            .register(meterRegistry);
+    attachmentTokensSent =
+        Counter.builder("assistant.attachments.tokens.sent")
+            .description("Attachment tokens sent to the model, inline or as retrieved excerpts")
+            .register(meterRegistry);
+    attachmentsIndexed =
+        Counter.builder("assistant.attachments.indexed")
+            .description("Attachments too large to send inline, indexed for per-chat retrieval")
+            .register(meterRegistry);
+
+    promptTokens =
+        Counter.builder("assistant.prompt.tokens")
+            .description("Tokens of follow-up prompts, counted over tools and messages")
+            .register(meterRegistry);
+    promptPrefixTokens =
+        Counter.builder("assistant.prompt.prefix.tokens")
+            .description("Leading prompt tokens shared with the previous request of the chat")
+            .register(meterRegistry);
+    promptPrefixReuse =
+        DistributionSummary.builder("assistant.prompt.prefix.reuse")
+            .description("Share of a prompt that repeats the previous request of the chat")
+            .register(meterRegistry);
+
+    Gauge.builder(
+            "assistant.scheduler.in.flight", generationScheduler, s -> s.getStats().inFlight())
+        .register(meterRegistry);
+    Gauge.builder("assistant.scheduler.queued", generationScheduler, s -> s.getStats().queued())
+        .register(meterRegistry);
+    Gauge.builder(
+            "assistant.scheduler.utilization",
+            generationScheduler,
+            s -> s.getStats().utilization())
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "assistant.scheduler.rejected", generationScheduler, s -> s.getStats().rejected())
+        .register(meterRegistry);
+    FunctionTimer.builder(
+            "assistant.scheduler.wait",
+            generationScheduler,
+            s -> s.getStats().started(),
+            s -> s.getStats().totalWait().toNanos(),
+            TimeUnit.NANOSECONDS)
+        .description("Time generations spent waiting in the queue")
+        .register(meterRegistry);
+
+    FunctionCounter.builder("rag.speculative.hits", speculativeRetriever, s -> s.getStats().hits())
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "rag.speculative.misses", speculativeRetriever, s -> s.getStats().misses())
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "rag.speculative.time.saved",
+            speculativeRetriever,
+            s -> s.getStats().timeSaved().toMillis())
+        .baseUnit("milliseconds")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Runs a stage of the request path inside an observation.
+   *
+   * @param name The observation name
+   * @param stage The stage to run
+   * @return The result of the stage
+   */
+  public <T> T observe(String name, Supplier<T> stage) {
+    return Observation.createNotStarted(name, observationRegistry).observe(stage);
+  }
+
+  /**
+   * Instruments an answer stream with time-to-first-token, token count and token rate.
+   *
+   * @param stream The answer tokens
+   * @param startNanos {@link System#nanoTime()} when the message was submitted
+   * @return The instrumented stream
+   */
+  public Flux<String> instrumentStream(Flux<String> stream, long startNanos) {
+    return Flux.defer(
+        () -> {
+          var state = new StreamState(startNanos);
+          return stream
+              .doOnSubscribe(subscription -> activeStreams.incrementAndGet())
+              .doOnNext(token -> state.onToken())
+              .doFinally(signal -> state.finish());
+        });
+  }
+
+  /**
+   * Records a completed ingestion.
+   *
+   * @param chunks Chunks written to the vector store
+   * @param estimatedTokens Estimated tokens embedded
+   */
+  public void recordIngestion(int chunks, int estimatedTokens) {
+    ingestedChunks.increment(chunks);
+    ingestedTokens.increment(estimatedTokens);
+    vectorStoreChunks.addAndGet(chunks);
+  }
+
+  /**
+   * Records the attachment tokens of a message.
+   *
+   * @param extractedTokens Tokens extracted from the attachments
+   * @param sentTokens Attachment tokens sent to the model
+   * @param indexed Attachments indexed for retrieval instead of being sent inline
+   */
+  public void recordAttachments(int extractedTokens, int sentTokens, int indexed) {
+    attachmentTokensExtracted.increment(extractedTokens);
+    attachmentTokensSent.increment(sentTokens);
+    attachmentsIndexed.increment(indexed);
+  }
+
+  /**
+   * Records how much of a prompt repeats the previous request of the same chat.
+   *
+   * @param sharedTokens Leading tokens shared with the previous request
+   * @param totalTokens Tokens of the prompt
+   */
+  public void recordPromptPrefix(int sharedTokens, int totalTokens) {
+    promptTokens.increment(totalTokens);
+    promptPrefixTokens.increment(sharedTokens);
+    if (totalTokens > 0) {
+      promptPrefixReuse.record((double) sharedTokens / totalTokens);
+    }
+  }
+
+  /**
+   * Creates a counter for the UI updates pushed while streaming one answer.
+   *
+   * @return A new push counter
+   */
+  public PushCounter pushCounter() {
+    return new PushCounter();
+  }
+
+  /** Counts the UI updates of one answer stream. */
+  public class PushCounter {
+    private int pushes;
+
+    private PushCounter() {}
+
+    /** Records one pushed update. Must be called while holding the session lock. */
+    public void increment() {
+      pushes++;
+      uiPushes.increment();
+    }
+
+    /** Records the number of updates pushed for the answer. */
+    public void close() {
+      uiPushesPerStream.record(pushes);
+    }
+  }
+
+  private class StreamState {
+    private final long startNanos;
+    private long firstTokenNanos;
+    private int count;
+
+    private StreamState(long startNanos) {
+      this.startNanos = startNanos;
+    }
+
+    private void onToken() {
+      if (count++ == 0) {
+        firstTokenNanos = System.nanoTime();
+        timeToFirstToken.record(firstTokenNanos - startNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    private void finish() {
+      activeStreams.decrementAndGet();
+      if (count == 0) {
+        return;
+      }
+      tokens.increment(count);
+      var seconds = (System.nanoTime() - firstTokenNanos) / 1e9;
+      if (seconds > 0) {
+        tokensPerSecond.record(count / seconds);
+      }
+    }
+  }
+}
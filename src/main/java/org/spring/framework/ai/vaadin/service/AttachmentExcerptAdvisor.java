@@ -0,0 +1,56 @@
+package org.spring.framework.ai.vaadin.service;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+/**
+ * Appends the attachment excerpts retrieved for a message to the user message.
+ *
+ * <p>It runs after the memory advisor has stored the user message, so the excerpts are only sent
+ * with the message they were retrieved for and do not come back as history on later turns.
+ */
+public class AttachmentExcerptAdvisor implements CallAdvisor, StreamAdvisor {
+
+  /** Advisor context key holding the excerpts to append, see {@link ChatAttachmentIndex}. */
+  public static final String EXCERPTS_KEY = "attachment_excerpts";
+
+  @Override
+  public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+    return chain.nextCall(augment(request));
+  }
+
+  @Override
+  public Flux<ChatClientResponse> adviseStream(
+      ChatClientRequest request, StreamAdvisorChain chain) {
+    return chain.nextStream(augment(request));
+  }
+
+  @Override
+  public String getName() {
+    return AttachmentExcerptAdvisor.class.getSimpleName();
+  }
+
+  @Override
+  public int getOrder() {
+    // After memory and RAG, so neither the history nor the search query contain the excerpts
+    return Ordered.LOWEST_PRECEDENCE - 2;
+  }
+
+  private static ChatClientRequest augment(ChatClientRequest request) {
+    if (!(request.context().get(EXCERPTS_KEY) instanceof String excerpts) || excerpts.isEmpty()) {
+      return request;
+    }
+    var prompt =
+        request
+            .prompt()
+            .augmentUserMessage(
+                userMessage -> userMessage.mutate().text(userMessage.getText() + excerpts).build());
+    return request.mutate().prompt(prompt).build();
+  }
+}
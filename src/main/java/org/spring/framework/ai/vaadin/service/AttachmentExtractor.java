@@ -0,0 +1,144 @@
+package org.spring.framework.ai.vaadin.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.function.SingletonSupplier;
+
+/**
+ * Extracts the text of an attachment with Tika, stopping the parse once a token limit is reached.
+ *
+ * <p>Text is tokenized while the parser produces it, so a large document is only parsed as far as
+ * its text can be used. The parser is created on first use, since loading the Tika parsers is slow;
+ * see {@link #warmUp()}.
+ */
+@Component
+public class AttachmentExtractor {
+
+  // Tokenize in segments of about this many characters, cut at whitespace
+  private static final int SEGMENT_CHARS = 4096;
+
+  /**
+   * Extracted text.
+   *
+   * @param text The text, at most the requested number of tokens
+   * @param tokens Tokens in the text
+   * @param complete Whether the whole document was extracted, false if the limit cut it short
+   */
+  public record Extraction(String text, int tokens, boolean complete) {}
+
+  private final SingletonSupplier<AutoDetectParser> parser =
+      SingletonSupplier.of(AutoDetectParser::new);
+  private final Encoding encoding =
+      Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+  /**
+   * Extracts the text of an attachment.
+   *
+   * @param attachment The attachment to read
+   * @param maxTokens Stop extracting after this many tokens
+   * @return The extracted text
+   */
+  public Extraction extract(AttachmentFile attachment, int maxTokens) {
+    var writer = new TokenLimitWriter(maxTokens);
+    try (var input = new ByteArrayInputStream(attachment.data())) {
+      var handler = new BodyContentHandler(writer);
+      parser.obtain().parse(input, handler, new Metadata(), new ParseContext());
+      writer.finish();
+    } catch (Exception e) {
+      if (!isLimitReached(e)) {
+        throw new IllegalStateException("Failed to extract " + attachment.fileName(), e);
+      }
+    }
+    return new Extraction(writer.text.toString(), writer.tokens, !writer.limitReached);
+  }
+
+  /** Loads the parsers by extracting a small document. */
+  public void warmUp() {
+    var data = "Warm up".getBytes(StandardCharsets.UTF_8);
+    extract(new AttachmentFile("warmup.txt", "text/plain", data), 16);
+  }
+
+  private static boolean isLimitReached(Throwable e) {
+    for (var cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TokenLimitReachedException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Thrown from the writer to abort the parse; the parser wraps it. */
+  private static final class TokenLimitReachedException extends IOException {
+    private TokenLimitReachedException() {
+      super("Token limit reached");
+    }
+  }
+
+  private final class TokenLimitWriter extends Writer {
+    private final int maxTokens;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder pending = new StringBuilder();
+    private int tokens;
+    private boolean limitReached;
+
+    private TokenLimitWriter(int maxTokens) {
+      this.maxTokens = maxTokens;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      if (limitReached) {
+        throw new TokenLimitReachedException();
+      }
+      pending.append(buffer, offset, length);
+      if (pending.length() >= SEGMENT_CHARS) {
+        // Cut at whitespace so that token counts of consecutive segments add up
+        var cut = pending.length();
+        while (cut > 0 && !Character.isWhitespace(pending.charAt(cut - 1))) {
+          cut--;
+        }
+        if (cut > 0) {
+          tokenize(cut);
+        }
+      }
+    }
+
+    private void finish() throws IOException {
+      tokenize(pending.length());
+    }
+
+    private void tokenize(int length) throws IOException {
+      var segment = pending.substring(0, length);
+      pending.delete(0, length);
+
+      var segmentTokens = encoding.countTokens(segment);
+      if (tokens + segmentTokens <= maxTokens) {
+        text.append(segment);
+        tokens += segmentTokens;
+        return;
+      }
+
+      var kept = encoding.encode(segment, maxTokens - tokens).getTokens();
+      text.append(encoding.decode(kept));
+      tokens += kept.size();
+      limitReached = true;
+      throw new TokenLimitReachedException();
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
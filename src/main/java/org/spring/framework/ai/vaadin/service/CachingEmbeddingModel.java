@@ -0,0 +1,93 @@
+package org.spring.framework.ai.vaadin.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Embedding model decorator that remembers the embeddings of documents by id.
+ *
+ * <p>The vector store embeds every chunk through this model at ingestion, so {@link ContextPacker}
+ * can compare retrieved chunks with each other without embedding them again on the request path.
+ * The cache is bounded and evicts the least recently used embeddings.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+  private final EmbeddingModel delegate;
+  private final Map<String, float[]> cache;
+
+  public CachingEmbeddingModel(EmbeddingModel delegate, int maxSize) {
+    this.delegate = delegate;
+    this.cache =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxSize;
+              }
+            });
+  }
+
+  @Override
+  public EmbeddingResponse call(EmbeddingRequest request) {
+    return delegate.call(request);
+  }
+
+  @Override
+  public float[] embed(Document document) {
+    var embedding = delegate.embed(document);
+    cache.put(document.getId(), embedding);
+    return embedding;
+  }
+
+  @Override
+  public List<float[]> embed(
+      List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+    var embeddings = delegate.embed(documents, options, batchingStrategy);
+    for (int i = 0; i < documents.size(); i++) {
+      cache.put(documents.get(i).getId(), embeddings.get(i));
+    }
+    return embeddings;
+  }
+
+  @Override
+  public int dimensions() {
+    return delegate.dimensions();
+  }
+
+  /**
+   * Gets the embeddings of documents, reusing the cached ones. Documents that were evicted, or not
+   * embedded through this model, are embedded in a single request.
+   *
+   * @param documents The documents to embed
+   * @return The embeddings, in the order of the documents
+   */
+  public List<float[]> embedDocuments(List<Document> documents) {
+    var embeddings = new float[documents.size()][];
+    var missing = new ArrayList<Integer>();
+    for (int i = 0; i < documents.size(); i++) {
+      embeddings[i] = cache.get(documents.get(i).getId());
+      if (embeddings[i] == null) {
+        missing.add(i);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      var computed = delegate.embed(missing.stream().map(i -> documents.get(i).getText()).toList());
+      for (int i = 0; i < missing.size(); i++) {
+        embeddings[missing.get(i)] = computed.get(i);
+        cache.put(documents.get(missing.get(i)).getId(), computed.get(i));
+      }
+    }
+    return Arrays.asList(embeddings);
+  }
+}
@@ -0,0 +1,109 @@
+package org.spring.framework.ai.vaadin.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Temporary per-chat vector stores for attachments that are too large to send inline.
+ *
+ * <p>Such attachments are chunked and embedded into a store that belongs to the chat, and every
+ * message of the chat is sent with the chunks most relevant to it, if any are similar enough. The
+ * store is dropped when the chat is closed. It is separate from the shared vector store, so
+ * attachments never leak into the RAG context of other chats.
+ */
+@Component
+public class ChatAttachmentIndex {
+
+  /** Metadata key holding the file name of a chunk. */
+  public static final String FILE_NAME = "filename";
+
+  private final EmbeddingModel embeddingModel;
+  private final boolean enabled;
+  private final int maxTokens;
+  private final int topK;
+  private final double similarityThreshold;
+  private final Map<String, SimpleVectorStore> stores = new ConcurrentHashMap<>();
+
+  public ChatAttachmentIndex(
+      EmbeddingModel embeddingModel,
+      @Value("${app.attachments.retrieval.enabled:true}") boolean enabled,
+      @Value("${app.attachments.retrieval.max-tokens:200000}") int maxTokens,
+      @Value("${app.attachments.retrieval.top-k:6}") int topK,
+      @Value("${app.attachments.retrieval.similarity-threshold:0.4}") double similarityThreshold) {
+    this.embeddingModel = embeddingModel;
+    this.enabled = enabled;
+    this.maxTokens = maxTokens;
+    this.topK = topK;
+    this.similarityThreshold = similarityThreshold;
+  }
+
+  /**
+   * Whether large attachments are indexed for retrieval instead of being truncated.
+   *
+   * @return true if {@link #add} may be used
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Gets the number of tokens of an attachment that are indexed at most.
+   *
+   * @return The token limit for indexed attachments
+   */
+  public int getMaxTokens() {
+    return maxTokens;
+  }
+
+  /**
+   * Chunks and embeds the text of an attachment into the store of a chat.
+   *
+   * @param chatId The chat the attachment was sent in
+   * @param fileName The name of the attachment
+   * @param text The extracted text
+   */
+  public void add(String chatId, String fileName, String text) {
+    var document = new Document(text, Map.of(FILE_NAME, fileName));
+    var chunks = new TokenTextSplitter().apply(List.of(document));
+    stores
+        .computeIfAbsent(chatId, k -> SimpleVectorStore.builder(embeddingModel).build())
+        .add(chunks);
+  }
+
+  /**
+   * Finds the attachment chunks of a chat that are most relevant to a message.
+   *
+   * @param chatId The chat to search
+   * @param query The message text
+   * @return The most similar chunks above the similarity threshold, or an empty list if none are
+   */
+  public List<Document> search(String chatId, String query) {
+    var store = stores.get(chatId);
+    if (store == null || query.isBlank()) {
+      return List.of();
+    }
+    return store.similaritySearch(
+        SearchRequest.builder()
+            .query(query)
+            .topK(topK)
+            .similarityThreshold(similarityThreshold)
+            .build());
+  }
+
+  /**
+   * Drops the store of a chat.
+   *
+   * @param chatId The chat that was closed
+   */
+  public void clear(String chatId) {
+    stores.remove(chatId);
+  }
+}
@@ -0,0 +1,164 @@
+package org.spring.framework.ai.vaadin.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.postretrieval.document.DocumentPostProcessor;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Post-retrieval stage that removes redundancy from the retrieved documents with maximal marginal
+ * relevance (MMR) and then packs them into a fixed token budget.
+ *
+ * <p>Relevance is the similarity score assigned by the vector store. The document embeddings needed
+ * to compare candidates with each other are the ones computed at ingestion, see {@link
+ * CachingEmbeddingModel}. If they cannot be obtained, the documents are packed in score order.
+ */
+@Component
+public class ContextPacker implements DocumentPostProcessor {
+
+  private static final Logger log = LoggerFactory.getLogger(ContextPacker.class);
+
+  /** Documents the pipeline used before retrieval was widened to candidates, for comparison. */
+  private static final int BASELINE_TOP_K = 4;
+
+  private final CachingEmbeddingModel embeddingModel;
+  private final double lambda;
+  private final int maxDocuments;
+  private final int maxTokens;
+  private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+  public ContextPacker(
+      @Qualifier("documentEmbeddingModel") CachingEmbeddingModel embeddingModel,
+      @Value("${app.rag.mmr.lambda:0.7}") double lambda,
+      @Value("${app.rag.context.max-documents:6}") int maxDocuments,
+      @Value("${app.rag.context.max-tokens:2000}") int maxTokens) {
+    this.embeddingModel = embeddingModel;
+    this.lambda = lambda;
+    this.maxDocuments = maxDocuments;
+    this.maxTokens = maxTokens;
+  }
+
+  @Override
+  public List<Document> process(Query query, List<Document> documents) {
+    if (documents.isEmpty()) {
+      return documents;
+    }
+
+    List<Document> selected;
+    try {
+      selected = diversify(documents);
+    } catch (RuntimeException e) {
+      // Redundancy cannot be measured, but that should not fail the answer
+      log.warn("Could not embed the retrieved documents, packing them in score order", e);
+      selected = byScore(documents).limit(maxDocuments).toList();
+    }
+    var packed = pack(selected);
+
+    if (log.isDebugEnabled()) {
+      // Compare with the top-K documents (in score order) that were sent before MMR packing
+      var baselineTokens = byScore(documents).limit(BASELINE_TOP_K).mapToInt(this::tokens).sum();
+      var packedTokens = packed.stream().mapToInt(this::tokens).sum();
+      log.debug(
+          "Packed {} of {} candidates into {} tokens ({} tokens for the top {} documents)",
+          packed.size(),
+          documents.size(),
+          packedTokens,
+          baselineTokens,
+          BASELINE_TOP_K);
+    }
+
+    return packed;
+  }
+
+  /** Greedily selects documents that are relevant to the query but dissimilar to each other. */
+  private List<Document> diversify(List<Document> candidates) {
+    var embeddings = embeddings(candidates);
+    var remaining = new ArrayList<>(candidates);
+    var selected = new ArrayList<Document>();
+
+    while (!remaining.isEmpty() && selected.size() < maxDocuments) {
+      Document best = null;
+      var bestScore = Double.NEGATIVE_INFINITY;
+
+      for (var candidate : remaining) {
+        var redundancy = 0.0;
+        for (var other : selected) {
+          redundancy =
+              Math.max(
+                  redundancy,
+                  cosineSimilarity(
+                      embeddings.get(candidate.getId()), embeddings.get(other.getId())));
+        }
+        var relevance = candidate.getScore() != null ? candidate.getScore() : 0.0;
+        var score = lambda * relevance - (1 - lambda) * redundancy;
+        if (score > bestScore) {
+          bestScore = score;
+          best = candidate;
+        }
+      }
+
+      remaining.remove(best);
+      selected.add(best);
+    }
+    return selected;
+  }
+
+  /** Keeps documents in MMR order for as long as they fit in the token budget. */
+  private List<Document> pack(List<Document> documents) {
+    var packed = new ArrayList<Document>();
+    var used = 0;
+    for (var document : documents) {
+      var tokens = tokens(document);
+      if (used + tokens > maxTokens) {
+        continue;
+      }
+      packed.add(document);
+      used += tokens;
+    }
+    return packed;
+  }
+
+  private Map<String, float[]> embeddings(List<Document> documents) {
+    var computed = embeddingModel.embedDocuments(documents);
+    var embeddings = new HashMap<String, float[]>();
+    for (int i = 0; i < documents.size(); i++) {
+      embeddings.put(documents.get(i).getId(), computed.get(i));
+    }
+    return embeddings;
+  }
+
+  private static Stream<Document> byScore(List<Document> documents) {
+    return documents.stream()
+        .sorted(
+            Comparator.comparing(
+                Document::getScore, Comparator.nullsLast(Comparator.<Double>reverseOrder())));
+  }
+
+  private int tokens(Document document) {
+    return tokenCountEstimator.estimate(document.getText());
+  }
+
+  private static double cosineSimilarity(float[] a, float[] b) {
+    var dot = 0.0;
+    var normA = 0.0;
+    var normB = 0.0;
+    for (int i = 0; i < a.length; i++) {
+      dot += a[i] * b[i];
+      normA += a[i] * a[i];
+      normB += b[i] * b[i];
+    }
+    return normA == 0 || normB == 0 ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+  }
+}
@@ -0,0 +1,377 @@
+package org.spring.framework.ai.vaadin.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Limits the number of concurrent LLM generations across all sessions.
+ *
+ * <p>Generations are admitted while fewer than the configured maximum are in flight and the
+ * estimated token usage of the last minute stays within the tokens-per-minute budget. Waiting
+ * generations are served in turns per session, so that one busy session cannot starve the others.
+ */
+@Service
+public class GenerationScheduler {
+
+  private static final Duration WINDOW = Duration.ofMinutes(1);
+
+  /** Listener for the queue position of a waiting generation. */
+  public interface QueueListener {
+    /**
+     * Called when the position of the generation in the queue changes.
+     *
+     * @param position The 1-based position in the queue, or 0 once the generation has started
+     */
+    void onQueuePositionChange(int position);
+  }
+
+  /** Signals that a generation was rejected because the queue is full. */
+  public static class GenerationRejectedException extends RuntimeException {
+    public GenerationRejectedException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Scheduler statistics.
+   *
+   * @param inFlight generations currently running
+   * @param queued generations currently waiting
+   * @param started generations started since startup
+   * @param rejected generations rejected since startup
+   * @param totalWait accumulated queue wait time of all started generations
+   * @param utilization ratio of running generations to the concurrency limit
+   */
+  public record Stats(
+      int inFlight,
+      int queued,
+      long started,
+      long rejected,
+      Duration totalWait,
+      double utilization) {}
+
+  private enum State {
+    WAITING,
+    RUNNING,
+    DONE
+  }
+
+  private static final class Ticket {
+    private final String sessionId;
+    private final int estimatedTokens;
+    private final Supplier<Flux<String>> generation;
+    private final QueueListener listener;
+    private final FluxSink<String> sink;
+    private final long enqueuedAt = System.nanoTime();
+    private State state = State.WAITING;
+    private int position = -1;
+    private Disposable subscription;
+
+    private Ticket(
+        String sessionId,
+        int estimatedTokens,
+        Supplier<Flux<String>> generation,
+        QueueListener listener,
+        FluxSink<String> sink) {
+      this.sessionId = sessionId;
+      this.estimatedTokens = estimatedTokens;
+      this.generation = generation;
+      this.listener = listener;
+      this.sink = sink;
+    }
+  }
+
+  /** Waiting tickets, grouped per session and served round-robin. */
+  private static final class FairQueue {
+    private final Map<String, Deque<Ticket>> sessions = new HashMap<>();
+    private final Deque<String> turns = new ArrayDeque<>();
+
+    private void add(Ticket ticket) {
+      var queue = sessions.computeIfAbsent(ticket.sessionId, k -> new ArrayDeque<>());
+      if (queue.isEmpty()) {
+        turns.add(ticket.sessionId);
+      }
+      queue.add(ticket);
+    }
+
+    private Ticket peek() {
+      return turns.isEmpty() ? null : sessions.get(turns.peek()).peek();
+    }
+
+    private Ticket poll() {
+      var sessionId = turns.poll();
+      var queue = sessions.get(sessionId);
+      var ticket = queue.poll();
+      if (queue.isEmpty()) {
+        sessions.remove(sessionId);
+      } else {
+        turns.add(sessionId);
+      }
+      return ticket;
+    }
+
+    private void remove(Ticket ticket) {
+      var queue = sessions.get(ticket.sessionId);
+      if (queue != null && queue.remove(ticket) && queue.isEmpty()) {
+        sessions.remove(ticket.sessionId);
+        turns.remove(ticket.sessionId);
+      }
+    }
+
+    /** Lists the waiting tickets in the order they would be served. */
+    private List<Ticket> inServiceOrder() {
+      var order = new ArrayList<Ticket>();
+      var queues = new ArrayDeque<Deque<Ticket>>();
+      turns.forEach(sessionId -> queues.add(new ArrayDeque<>(sessions.get(sessionId))));
+      while (!queues.isEmpty()) {
+        var queue = queues.poll();
+        order.add(queue.poll());
+        if (!queue.isEmpty()) {
+          queues.add(queue);
+        }
+      }
+      return order;
+    }
+  }
+
+  private final int maxInFlight;
+  private final int maxQueued;
+  private final int tokensPerMinute;
+  private final Duration window;
+
+  private final FairQueue waiting = new FairQueue();
+  private final Deque<long[]> tokenWindow = new ArrayDeque<>();
+  private long windowTokens;
+  private int inFlight;
+  private int queued;
+  private long started;
+  private long rejected;
+  private long totalWaitNanos;
+  private boolean retryScheduled;
+
+  @Autowired
+  public GenerationScheduler(
+      @Value("${app.llm.scheduler.max-in-flight:8}") int maxInFlight,
+      @Value("${app.llm.scheduler.max-queued:100}") int maxQueued,
+      @Value("${app.llm.scheduler.tokens-per-minute:200000}") int tokensPerMinute) {
+    this(maxInFlight, maxQueued, tokensPerMinute, WINDOW);
+  }
+
+  GenerationScheduler(int maxInFlight, int maxQueued, int tokensPerMinute, Duration window) {
+    this.maxInFlight = maxInFlight;
+    this.maxQueued = maxQueued;
+    this.tokensPerMinute = tokensPerMinute;
+    this.window = window;
+  }
+
+  /**
+   * Schedules a generation. The generation is started once capacity is available, and its output
+   * is relayed to the returned flux. Cancelling the returned flux removes a waiting generation from
+   * the queue or cancels a running one.
+   *
+   * @param sessionId Key used for fair queuing between sessions
+   * @param estimatedTokens Estimated tokens the generation consumes, counted against the budget
+   * @param generation Supplier of the generation, invoked when it is admitted
+   * @param listener Listener notified of the queue position while the generation waits
+   * @return A flux with the output of the generation
+   */
+  public Flux<String> schedule(
+      String sessionId,
+      int estimatedTokens,
+      Supplier<Flux<String>> generation,
+      QueueListener listener) {
+    return Flux.create(
+        sink -> {
+          var ticket = new Ticket(sessionId, estimatedTokens, generation, listener, sink);
+          sink.onDispose(() -> cancel(ticket));
+          enqueue(ticket);
+        });
+  }
+
+  /**
+   * Gets the current scheduler statistics.
+   *
+   * @return A snapshot of the statistics
+   */
+  public synchronized Stats getStats() {
+    return new Stats(
+        inFlight,
+        queued,
+        started,
+        rejected,
+        Duration.ofNanos(totalWaitNanos),
+        (double) inFlight / maxInFlight);
+  }
+
+  private void enqueue(Ticket ticket) {
+    synchronized (this) {
+      if (queued >= maxQueued) {
+        rejected++;
+        ticket.state = State.DONE;
+      } else {
+        waiting.add(ticket);
+        queued++;
+      }
+    }
+
+    if (ticket.state == State.DONE) {
+      ticket.sink.error(
+          new GenerationRejectedException("Too many requests are waiting, please try again later"));
+      return;
+    }
+    dispatch();
+  }
+
+  private void cancel(Ticket ticket) {
+    Disposable subscription = null;
+    synchronized (this) {
+      switch (ticket.state) {
+        case WAITING -> {
+          waiting.remove(ticket);
+          queued--;
+        }
+        case RUNNING -> {
+          inFlight--;
+          subscription = ticket.subscription;
+        }
+        case DONE -> {
+          return;
+        }
+      }
+      ticket.state = State.DONE;
+    }
+
+    if (subscription != null) {
+      subscription.dispose();
+    }
+    dispatch();
+  }
+
+  private void dispatch() {
+    var admitted = new ArrayList<Ticket>();
+    var moved = new ArrayList<Ticket>();
+
+    synchronized (this) {
+      var now = System.nanoTime();
+      expireTokens(now);
+
+      while (inFlight < maxInFlight) {
+        var ticket = waiting.peek();
+        if (ticket == null) {
+          break;
+        }
+        if (windowTokens > 0 && windowTokens + ticket.estimatedTokens > tokensPerMinute) {
+          scheduleRetry(now);
+          break;
+        }
+
+        waiting.poll();
+        queued--;
+        inFlight++;
+        started++;
+        totalWaitNanos += now - ticket.enqueuedAt;
+        tokenWindow.add(new long[] {now, ticket.estimatedTokens});
+        windowTokens += ticket.estimatedTokens;
+        ticket.state = State.RUNNING;
+        ticket.position = 0;
+        admitted.add(ticket);
+      }
+
+      // Recompute the positions of the generations that are still waiting
+      var position = 0;
+      for (var ticket : waiting.inServiceOrder()) {
+        position++;
+        if (ticket.position != position) {
+          ticket.position = position;
+          moved.add(ticket);
+        }
+      }
+    }
+
+    moved.forEach(ticket -> ticket.listener.onQueuePositionChange(ticket.position));
+    admitted.forEach(this::start);
+  }
+
+  private void start(Ticket ticket) {
+    ticket.listener.onQueuePositionChange(0);
+
+    Flux<String> generation;
+    try {
+      generation = ticket.generation.get();
+    } catch (RuntimeException e) {
+      finish(ticket);
+      ticket.sink.error(e);
+      return;
+    }
+
+    var subscription =
+        generation.subscribe(
+            ticket.sink::next,
+            error -> {
+              finish(ticket);
+              ticket.sink.error(error);
+            },
+            () -> {
+              finish(ticket);
+              ticket.sink.complete();
+            });
+
+    synchronized (this) {
+      if (ticket.state == State.RUNNING) {
+        ticket.subscription = subscription;
+        return;
+      }
+    }
+    // Cancelled while starting
+    subscription.dispose();
+  }
+
+  private void finish(Ticket ticket) {
+    synchronized (this) {
+      if (ticket.state != State.RUNNING) {
+        return;
+      }
+      ticket.state = State.DONE;
+      inFlight--;
+    }
+    dispatch();
+  }
+
+  private void expireTokens(long now) {
+    while (!tokenWindow.isEmpty() && now - tokenWindow.peek()[0] >= window.toNanos()) {
+      windowTokens -= tokenWindow.poll()[1];
+    }
+  }
+
+  private void scheduleRetry(long now) {
+    if (retryScheduled || tokenWindow.isEmpty()) {
+      return;
+    }
+    retryScheduled = true;
+    var delay = window.toNanos() - (now - tokenWindow.peek()[0]);
+    Schedulers.parallel()
+        .schedule(
+            () -> {
+              synchronized (this) {
+                retryScheduled = false;
+              }
+              dispatch();
+            },
+            Math.max(1, delay),
+            TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,254 @@
+package org.spring.framework.ai.vaadin.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Detects near-duplicate chunks before they are embedded, using MinHash signatures over word
+ * shingles and locality-sensitive hashing (LSH) to find candidate pairs without comparing every
+ * chunk against every other chunk.
+ *
+ * <p>Filtering reserves the signatures of the accepted chunks as pending, so files ingested
+ * concurrently are checked against each other. The caller makes them permanent with {@link #commit}
+ * once the chunks are stored, or drops them with {@link #release} if storing failed, so that the
+ * file can be ingested again. Committed signatures are kept for the lifetime of the application,
+ * so a chunk is also dropped when it duplicates one ingested from an earlier file.
+ */
+@Component
+public class NearDuplicateFilter {
+
+  private static final int SHINGLE_SIZE = 3;
+  private static final int BANDS = 32;
+  private static final int ROWS_PER_BAND = 4;
+  private static final int NUM_HASHES = BANDS * ROWS_PER_BAND;
+
+  // Mersenne prime used for the universal hash family h(x) = (a * x + b) mod p, small enough
+  // that a * x + b cannot overflow a long
+  private static final long PRIME = (1L << 31) - 1;
+
+  /**
+   * Outcome of filtering a batch of chunks.
+   *
+   * @param totalChunks number of chunks that were inspected
+   * @param droppedChunks number of chunks dropped as near-duplicates
+   * @param tokensSaved estimated number of tokens that did not have to be embedded
+   */
+  public record Report(int totalChunks, int droppedChunks, int tokensSaved) {}
+
+  /**
+   * Accepted chunks together with the report describing what was dropped.
+   *
+   * @param documents the chunks that should be embedded
+   * @param report statistics about the dropped chunks
+   * @param signatures the signatures of the accepted chunks, pending until the result is passed to
+   *     {@link #commit} or {@link #release}
+   */
+  public record Result(List<Document> documents, Report report, List<int[]> signatures) {}
+
+  private final boolean enabled;
+  private final double similarityThreshold;
+  private final long[] hashA = new long[NUM_HASHES];
+  private final long[] hashB = new long[NUM_HASHES];
+  private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+  private final SignatureIndex committed = new SignatureIndex();
+  private final List<SignatureIndex> pending = new ArrayList<>();
+
+  public NearDuplicateFilter(
+      @Value("${app.rag.dedup.enabled:true}") boolean enabled,
+      @Value("${app.rag.dedup.similarity-threshold:0.85}") double similarityThreshold) {
+    if (similarityThreshold <= 0 || similarityThreshold > 1) {
+      throw new IllegalArgumentException(
+          "app.rag.dedup.similarity-threshold must be in (0, 1], was " + similarityThreshold);
+    }
+    this.enabled = enabled;
+    this.similarityThreshold = similarityThreshold;
+
+    // Fixed seed so that signatures are comparable across runs
+    var random = new SplittableRandom(42);
+    for (int i = 0; i < NUM_HASHES; i++) {
+      hashA[i] = 1 + random.nextLong(PRIME - 1);
+      hashB[i] = random.nextLong(PRIME);
+    }
+  }
+
+  /**
+   * Removes chunks that are near-duplicates of committed or pending chunks or of each other. The
+   * accepted chunks are pending until the result is passed to {@link #commit} or {@link #release}.
+   *
+   * @param chunks The chunks to filter, in ingestion order
+   * @return The chunks to embed and a report of what was dropped
+   */
+  public synchronized Result filter(List<Document> chunks) {
+    if (!enabled) {
+      return new Result(chunks, new Report(chunks.size(), 0, 0), List.of());
+    }
+
+    var accepted = new ArrayList<Document>(chunks.size());
+    var batch = new SignatureIndex();
+    var dropped = 0;
+    var tokensSaved = 0;
+
+    for (var chunk : chunks) {
+      var text = chunk.getText();
+      if (text == null || text.isBlank()) {
+        accepted.add(chunk);
+        continue;
+      }
+
+      var signature = signature(text);
+      if (committed.containsNearDuplicate(signature)
+          || batch.containsNearDuplicate(signature)
+          || pending.stream().anyMatch(other -> other.containsNearDuplicate(signature))) {
+        dropped++;
+        tokensSaved += tokenCountEstimator.estimate(text);
+        continue;
+      }
+
+      batch.add(signature);
+      accepted.add(chunk);
+    }
+
+    if (!batch.signatures.isEmpty()) {
+      pending.add(batch);
+    }
+    return new Result(
+        accepted, new Report(chunks.size(), dropped, tokensSaved), batch.signatures);
+  }
+
+  /**
+   * Makes the pending chunks of a result permanent. Call this only after the chunks have been
+   * stored.
+   *
+   * @param result The result of {@link #filter} whose chunks were stored
+   */
+  public synchronized void commit(Result result) {
+    if (removePending(result)) {
+      result.signatures().forEach(committed::add);
+    }
+  }
+
+  /**
+   * Forgets the pending chunks of a result whose chunks could not be stored, so that they are
+   * accepted when they are ingested again.
+   *
+   * @param result The result of {@link #filter} whose chunks were not stored
+   */
+  public synchronized void release(Result result) {
+    removePending(result);
+  }
+
+  private boolean removePending(Result result) {
+    return pending.removeIf(batch -> batch.signatures == result.signatures());
+  }
+
+  private int[] signature(String text) {
+    var signature = new int[NUM_HASHES];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+
+    for (var shingle : shingles(text)) {
+      for (int i = 0; i < NUM_HASHES; i++) {
+        var hash = (int) ((hashA[i] * shingle + hashB[i]) % PRIME);
+        if (hash < signature[i]) {
+          signature[i] = hash;
+        }
+      }
+    }
+    return signature;
+  }
+
+  private static Set<Long> shingles(String text) {
+    // A leading non-word character makes split return an empty first word
+    var words =
+        Arrays.stream(text.toLowerCase(Locale.ROOT).split("\\W+"))
+            .filter(word -> !word.isEmpty())
+            .toArray(String[]::new);
+    var shingles = new HashSet<Long>();
+    if (words.length < SHINGLE_SIZE) {
+      shingles.add(fingerprint(String.join(" ", words)));
+      return shingles;
+    }
+    for (int i = 0; i + SHINGLE_SIZE <= words.length; i++) {
+      shingles.add(fingerprint(String.join(" ", Arrays.copyOfRange(words, i, i + SHINGLE_SIZE))));
+    }
+    return shingles;
+  }
+
+  /** 64-bit FNV-1a hash of the shingle, reduced into the prime field. */
+  private static long fingerprint(String shingle) {
+    var hash = 0xcbf29ce484222325L;
+    for (var b : shingle.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b;
+      hash *= 0x100000001b3L;
+    }
+    return Math.floorMod(hash, PRIME);
+  }
+
+  private static long bandKey(int[] signature, int band) {
+    var key = 17L;
+    for (int row = 0; row < ROWS_PER_BAND; row++) {
+      key = key * 31 + signature[band * ROWS_PER_BAND + row];
+    }
+    return key;
+  }
+
+  private static double estimateSimilarity(int[] a, int[] b) {
+    var equal = 0;
+    for (int i = 0; i < NUM_HASHES; i++) {
+      if (a[i] == b[i]) {
+        equal++;
+      }
+    }
+    return (double) equal / NUM_HASHES;
+  }
+
+  /** Signatures bucketed by LSH band, so candidates are found without a full scan. */
+  private final class SignatureIndex {
+    private final List<int[]> signatures = new ArrayList<>();
+    private final List<Map<Long, List<Integer>>> buckets = new ArrayList<>();
+
+    private SignatureIndex() {
+      for (int band = 0; band < BANDS; band++) {
+        buckets.add(new HashMap<>());
+      }
+    }
+
+    private boolean containsNearDuplicate(int[] signature) {
+      var checked = new HashSet<Integer>();
+      for (int band = 0; band < BANDS; band++) {
+        var candidates = buckets.get(band).get(bandKey(signature, band));
+        if (candidates == null) {
+          continue;
+        }
+        for (var candidate : candidates) {
+          if (checked.add(candidate)
+              && estimateSimilarity(signature, signatures.get(candidate)) >= similarityThreshold) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private void add(int[] signature) {
+      var id = signatures.size();
+      signatures.add(signature);
+      for (int band = 0; band < BANDS; band++) {
+        buckets.get(band).computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>()).add(id);
+      }
+    }
+  }
+}
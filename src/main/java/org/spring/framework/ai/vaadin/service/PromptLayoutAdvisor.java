@@ -0,0 +1,190 @@
+package org.spring.framework.ai.vaadin.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Last advisor before the model call. Fixes the message order of the final prompt and measures how
+ * much of it repeats the previous request of the same chat.
+ *
+ * <p>In the {@link Layout#STABLE} layout, system messages are moved to the front. The memory
+ * advisor otherwise places the conversation history before the system message, so the system
+ * prompt, attachments and tool definitions would shift on every turn and provider-side prefix
+ * caching could not reuse them.
+ *
+ * <p>Prefix reuse is the number of leading tokens a request shares with the previous request of
+ * the same chat, counted over the tool definitions followed by the messages, in the order they are
+ * sent. It is an offline estimate of what a provider prompt cache could hit. Like provider caches,
+ * it compares whole blocks of tokens, so only a hash per block is kept for each chat. Tokenizing
+ * the prompt is expensive for large prompts, so it runs on the blocking scheduler rather than on
+ * the way to the model, and is disabled by default.
+ */
+@Component
+public class PromptLayoutAdvisor implements CallAdvisor, StreamAdvisor {
+
+  /** How the prompt is laid out. */
+  public enum Layout {
+    /**
+     * System prompt, tool definitions and attachments form a deterministic prefix; history and the
+     * augmented user message follow.
+     */
+    STABLE,
+    /** Attachments are inlined into the user message and messages keep the advisor order. */
+    LEGACY
+  }
+
+  // Prefixes are compared in blocks of this many tokens, the granularity of OpenAI prompt caching
+  private static final int BLOCK_TOKENS = 128;
+  // Blocks compared at most, so the state kept per chat stays small for very large prompts
+  private static final int MAX_BLOCKS = 2048;
+
+  private final Layout layout;
+  private final boolean measurePrefix;
+  private final AssistantMetrics metrics;
+  private final Scheduler blockingScheduler;
+  private final Encoding encoding =
+      Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+  private final Map<String, long[]> previousBlocks = new ConcurrentHashMap<>();
+
+  public PromptLayoutAdvisor(
+      @Value("${app.prompt.layout:stable}") Layout layout,
+      @Value("${app.prompt.prefix-metrics.enabled:false}") boolean measurePrefix,
+      AssistantMetrics metrics,
+      Scheduler blockingScheduler) {
+    this.layout = layout;
+    this.measurePrefix = measurePrefix;
+    this.metrics = metrics;
+    this.blockingScheduler = blockingScheduler;
+  }
+
+  /**
+   * Gets the configured layout.
+   *
+   * @return The prompt layout
+   */
+  public Layout getLayout() {
+    return layout;
+  }
+
+  /**
+   * Forgets the previous request of a chat.
+   *
+   * @param chatId The chat that was closed
+   */
+  public void forget(String chatId) {
+    previousBlocks.remove(chatId);
+  }
+
+  @Override
+  public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+    return chain.nextCall(prepare(request));
+  }
+
+  @Override
+  public Flux<ChatClientResponse> adviseStream(
+      ChatClientRequest request, StreamAdvisorChain chain) {
+    return chain.nextStream(prepare(request));
+  }
+
+  @Override
+  public String getName() {
+    return PromptLayoutAdvisor.class.getSimpleName();
+  }
+
+  @Override
+  public int getOrder() {
+    // Run after memory and RAG have added their messages, right before the model call
+    return Ordered.LOWEST_PRECEDENCE - 1;
+  }
+
+  private ChatClientRequest prepare(ChatClientRequest request) {
+    if (layout == Layout.STABLE) {
+      request = systemFirst(request);
+    }
+    var conversationId = request.context().get(ChatMemory.CONVERSATION_ID);
+    if (measurePrefix && conversationId instanceof String chatId) {
+      var prompt = request.prompt();
+      blockingScheduler.schedule(() -> measure(chatId, prompt));
+    }
+    return request;
+  }
+
+  private static ChatClientRequest systemFirst(ChatClientRequest request) {
+    var messages = new ArrayList<>(request.prompt().getInstructions());
+    // Stable sort, so system messages keep their relative order and so do all others
+    messages.sort(Comparator.comparing(message -> message.getMessageType() != MessageType.SYSTEM));
+    return request
+        .mutate()
+        .prompt(new Prompt(messages, request.prompt().getOptions()))
+        .build();
+  }
+
+  private void measure(String chatId, Prompt prompt) {
+    var text = new StringBuilder();
+    if (prompt.getOptions() instanceof ToolCallingChatOptions toolOptions) {
+      for (var toolCallback : toolOptions.getToolCallbacks()) {
+        var definition = toolCallback.getToolDefinition();
+        text.append(definition.name())
+            .append('\n')
+            .append(definition.description())
+            .append('\n')
+            .append(definition.inputSchema())
+            .append('\n');
+      }
+    }
+    for (Message message : prompt.getInstructions()) {
+      text.append(message.getMessageType().getValue())
+          .append('\n')
+          .append(message.getText())
+          .append('\n');
+    }
+
+    var tokens = encoding.encode(text.toString());
+    var blocks = blockHashes(tokens.toArray());
+    var previous = previousBlocks.put(chatId, blocks);
+    if (previous == null) {
+      // The first request of a chat has nothing to reuse and is not recorded
+      return;
+    }
+    var length = Math.min(previous.length, blocks.length);
+    var sharedBlocks = 0;
+    while (sharedBlocks < length && previous[sharedBlocks] == blocks[sharedBlocks]) {
+      sharedBlocks++;
+    }
+    metrics.recordPromptPrefix(sharedBlocks * BLOCK_TOKENS, tokens.size());
+  }
+
+  /** Hashes of the prefixes ending at each complete block, so equal hashes mean equal prefixes. */
+  private static long[] blockHashes(int[] tokens) {
+    var blocks = new long[Math.min(tokens.length / BLOCK_TOKENS, MAX_BLOCKS)];
+    var hash = 17L;
+    for (int block = 0; block < blocks.length; block++) {
+      for (int i = block * BLOCK_TOKENS; i < (block + 1) * BLOCK_TOKENS; i++) {
+        hash = hash * 1_000_003L + tokens[i];
+      }
+      blocks[block] = hash;
+    }
+    return blocks;
+  }
+}
@@ -1,37 +1,106 @@
 package org.spring.framework.ai.vaadin.service;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 /**
  * Service for managing contextual data for Retrieval-Augmented Generation (RAG) processes.
  * This service allows the addition of file data to a context that can be utilized for
  * document retrieval and text processing operations.
  *
+ * Chunks that are near-duplicates of already ingested content are dropped before they are
+ * embedded, see {@link NearDuplicateFilter}.
+ *
  * Files are managed in an in-memory list for simplicity.
  */
 @Service
 public class RagContextService {
 
+  private static final Logger log = LoggerFactory.getLogger(RagContextService.class);
+
   private final VectorStore vectorStore;
-  private final List<String> filesInContext = new ArrayList<>();
+  private final NearDuplicateFilter nearDuplicateFilter;
+  private final Scheduler blockingScheduler;
+  private final AssistantMetrics metrics;
+  private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+  private final List<String> filesInContext = new CopyOnWriteArrayList<>();
 
-  public RagContextService(VectorStore vectorStore) {
+  public RagContextService(
+      VectorStore vectorStore,
+      NearDuplicateFilter nearDuplicateFilter,
+      Scheduler blockingScheduler,
+      AssistantMetrics metrics) {
     this.vectorStore = vectorStore;
+    this.nearDuplicateFilter = nearDuplicateFilter;
+    this.blockingScheduler = blockingScheduler;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Parses, chunks and embeds the given file into the vector store. The work runs on the blocking
+   * scheduler, so the calling thread is released immediately.
+   *
+   * @param file The file to add to the context
+   * @return A future completed with a report of the chunks that were dropped as near-duplicates
+   * @throws IOException If the file cannot be read
+   */
+  public CompletableFuture<NearDuplicateFilter.Report> addFileToContext(MultipartFile file)
+      throws IOException {
+    var fileName = file.getOriginalFilename();
+    var resource = new ByteArrayResource(file.getBytes());
+    return Mono.fromCallable(
+            () -> metrics.observe("rag.ingestion", () -> ingest(fileName, resource)))
+        .subscribeOn(blockingScheduler)
+        .toFuture();
   }
 
-  public void addFileToContext(MultipartFile file) throws IOException {
-    var resource = new InputStreamResource(file.getInputStream());
-    vectorStore.write(new TokenTextSplitter().apply(new TikaDocumentReader(resource).read()));
+  private NearDuplicateFilter.Report ingest(String fileName, ByteArrayResource resource) {
+    var chunks = new TokenTextSplitter().apply(new TikaDocumentReader(resource).read());
+
+    var result = nearDuplicateFilter.filter(chunks);
+    try {
+      if (!result.documents().isEmpty()) {
+        vectorStore.write(result.documents());
+      }
+    } catch (RuntimeException e) {
+      // Forget the reserved chunks, so that the file can be ingested again
+      nearDuplicateFilter.release(result);
+      throw e;
+    }
+    nearDuplicateFilter.commit(result);
+
+    if (!result.documents().isEmpty()) {
+      metrics.recordIngestion(
+          result.documents().size(),
+          result.documents().stream()
+              .mapToInt(document -> tokenCountEstimator.estimate(document.getText()))
+              .sum());
+    }
+
+    var report = result.report();
+    log.info(
+        "Ingested {}: {} of {} chunks dropped as near-duplicates, ~{} embedding tokens saved",
+        fileName,
+        report.droppedChunks(),
+        report.totalChunks(),
+        report.tokensSaved());
 
-    filesInContext.add(file.getOriginalFilename());
+    filesInContext.add(fileName);
+    return report;
   }
 
   public List<String> getFilesInContext() {
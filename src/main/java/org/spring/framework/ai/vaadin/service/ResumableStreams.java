@@ -0,0 +1,243 @@
+package org.spring.framework.ai.vaadin.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Keeps answer streams running independently of the view that started them.
+ *
+ * <p>{@link #start} subscribes to the answer once and writes every token into a ring buffer keyed
+ * by chat and message id. The buffer starts small and grows with the answer up to the configured
+ * size, after which the oldest tokens are evicted. Views do not receive tokens directly; they are
+ * notified that new tokens are available and read everything after their own offset with {@link
+ * Generation#read}. A view whose push connection dropped, or that was detached by a refresh, can
+ * therefore skip the notifications it cannot deliver and catch up in a single update later,
+ * without calling the model again.
+ *
+ * <p>A generation is removed from the registry once it completes, fails or is cancelled. Views that
+ * still hold it can read the remaining tokens.
+ */
+@Service
+public class ResumableStreams {
+
+  // Tokens buffered before the first resize, enough for a short answer
+  private static final int INITIAL_CAPACITY = 64;
+
+  private record Key(String chatId, String messageId) {}
+
+  /**
+   * Tokens read from a generation.
+   *
+   * @param text The tokens after the requested offset, concatenated
+   * @param offset The offset to read from next time
+   * @param truncated Whether tokens before this read were evicted from the buffer and are missing
+   */
+  public record Chunk(String text, long offset, boolean truncated) {}
+
+  /** Callbacks of a view following a generation. */
+  public interface Listener {
+    /** Called when new tokens were written to the buffer. */
+    void onTokens();
+
+    /**
+     * Called once when the generation ends.
+     *
+     * @param error The error the generation failed with, or null if it completed normally
+     */
+    void onEnd(Throwable error);
+  }
+
+  private final int bufferSize;
+  private final Map<Key, Generation> active = new ConcurrentHashMap<>();
+
+  public ResumableStreams(@Value("${app.stream.buffer.max-tokens:16384}") int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Stream buffer size must be positive");
+    }
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Starts buffering an answer stream.
+   *
+   * @param chatId The chat the answer belongs to
+   * @param messageId The id of the answer message
+   * @param tokens The answer tokens, subscribed to once
+   * @return The buffered generation
+   */
+  public Generation start(String chatId, String messageId, Flux<String> tokens) {
+    var generation = new Generation(chatId, messageId);
+    active.put(new Key(chatId, messageId), generation);
+    generation.subscribe(tokens);
+    return generation;
+  }
+
+  /**
+   * Finds the generations that are still running for a chat.
+   *
+   * @param chatId The chat to look up
+   * @return The running generations
+   */
+  public List<Generation> findActive(String chatId) {
+    return active.values().stream().filter(g -> g.chatId().equals(chatId)).toList();
+  }
+
+  /**
+   * Cancels the generations running for a chat.
+   *
+   * @param chatId The chat to cancel the generations of
+   */
+  public void cancel(String chatId) {
+    findActive(chatId).forEach(Generation::cancel);
+  }
+
+  /** A buffered answer stream. */
+  public final class Generation {
+    private final String chatId;
+    private final String messageId;
+    private String[] ring;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Sequence number of the oldest buffered token and of the next token to be written
+    private long head;
+    private long tail;
+    private boolean ended;
+    private Throwable error;
+    private Disposable subscription;
+
+    private Generation(String chatId, String messageId) {
+      this.chatId = chatId;
+      this.messageId = messageId;
+      this.ring = new String[Math.min(INITIAL_CAPACITY, bufferSize)];
+    }
+
+    public String chatId() {
+      return chatId;
+    }
+
+    public String messageId() {
+      return messageId;
+    }
+
+    /**
+     * Reads the tokens written after an offset.
+     *
+     * @param offset The offset returned by the previous read, or 0 to read from the start
+     * @return The buffered tokens after the offset
+     */
+    public synchronized Chunk read(long offset) {
+      var from = Math.max(offset, head);
+      var text = new StringBuilder();
+      for (var sequence = from; sequence < tail; sequence++) {
+        text.append(ring[(int) (sequence % ring.length)]);
+      }
+      return new Chunk(text.toString(), tail, offset < head);
+    }
+
+    /**
+     * Registers a listener for new tokens and the end of the generation. If the generation has
+     * already ended, the listener is called immediately.
+     *
+     * @param listener The listener to register
+     * @return A handle that unregisters the listener
+     */
+    public Disposable listen(Listener listener) {
+      listeners.add(listener);
+      boolean endedAlready;
+      Throwable endError;
+      synchronized (this) {
+        endedAlready = ended;
+        endError = error;
+      }
+      if (endedAlready && listeners.remove(listener)) {
+        listener.onEnd(endError);
+      }
+      return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Whether the generation has completed, failed or been cancelled.
+     *
+     * @return true if no more tokens will be written
+     */
+    public synchronized boolean isEnded() {
+      return ended;
+    }
+
+    /** Cancels the model stream. Listeners are notified as if the generation had completed. */
+    public void cancel() {
+      Disposable toDispose;
+      synchronized (this) {
+        toDispose = subscription;
+      }
+      if (toDispose != null) {
+        toDispose.dispose();
+      }
+      end(null);
+    }
+
+    private void subscribe(Flux<String> tokens) {
+      var disposable = tokens.subscribe(this::write, this::end, () -> end(null));
+      synchronized (this) {
+        if (!ended) {
+          subscription = disposable;
+          return;
+        }
+      }
+      // Cancelled while subscribing
+      disposable.dispose();
+    }
+
+    private void write(String token) {
+      synchronized (this) {
+        if (ended) {
+          return;
+        }
+        if (tail - head == ring.length) {
+          if (ring.length < bufferSize) {
+            grow();
+          } else {
+            head++;
+          }
+        }
+        ring[(int) (tail % ring.length)] = token;
+        tail++;
+      }
+      listeners.forEach(Listener::onTokens);
+    }
+
+    private void grow() {
+      var grown = new String[(int) Math.min((long) ring.length * 2, bufferSize)];
+      for (var sequence = head; sequence < tail; sequence++) {
+        grown[(int) (sequence % grown.length)] = ring[(int) (sequence % ring.length)];
+      }
+      ring = grown;
+    }
+
+    private void end(Throwable failure) {
+      synchronized (this) {
+        if (ended) {
+          return;
+        }
+        ended = true;
+        error = failure;
+        subscription = null;
+      }
+      active.remove(new Key(chatId, messageId));
+      notifyEnd(failure);
+    }
+
+    private void notifyEnd(Throwable failure) {
+      for (var listener : listeners) {
+        if (listeners.remove(listener)) {
+          listener.onEnd(failure);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package org.spring.framework.ai.vaadin.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Document retriever that can start retrieval for a chat while the user is still typing.
+ *
+ * <p>The UI reports the draft text through {@link #prefetch(String, String)}. The retrieval for the
+ * latest draft runs in the background, replacing (and cancelling) any earlier speculation for the
+ * same chat. When the message is submitted, {@link #retrieve(Query)} reuses the speculative result
+ * if the submitted text is close enough to the draft, and otherwise falls back to a regular vector
+ * store search.
+ *
+ * <p>Speculative results are retrieved for the raw draft text, not for the rewritten query. The
+ * speculation is therefore claimed before the query is rewritten, see {@link
+ * #skipOnHit(QueryTransformer)}, and a hit skips the rewrite along with the search.
+ */
+@Service
+public class SpeculativeRetriever implements DocumentRetriever {
+
+  /** Advisor context key holding the text the user submitted. */
+  public static final String USER_TEXT_KEY = "speculative_retriever_user_text";
+
+  private static final Logger log = LoggerFactory.getLogger(SpeculativeRetriever.class);
+
+  private static final String SPECULATION_KEY = "speculative_retriever_speculation";
+
+  private record Speculation(
+      String draft, CompletableFuture<List<Document>> result, AtomicLong retrievalNanos) {}
+
+  /**
+   * Speculation statistics since startup.
+   *
+   * @param hits submitted messages served from a speculative result
+   * @param misses submitted messages that had to be retrieved normally
+   * @param timeSaved retrieval time that was taken off the critical path
+   */
+  public record Stats(long hits, long misses, Duration timeSaved) {
+    public double hitRate() {
+      var total = hits + misses;
+      return total == 0 ? 0 : (double) hits / total;
+    }
+  }
+
+  private final DocumentRetriever delegate;
+  private final Scheduler blockingScheduler;
+  private final boolean enabled;
+  private final int minDraftLength;
+  private final double minSimilarity;
+  private final Duration maxWait;
+
+  private final Map<String, Speculation> speculations = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong savedNanos = new AtomicLong();
+
+  public SpeculativeRetriever(
+      VectorStore vectorStore,
+      Scheduler blockingScheduler,
+      @Value("${app.rag.retrieval.candidates:12}") int retrievalCandidates,
+      @Value("${app.rag.speculative.enabled:false}") boolean enabled,
+      @Value("${app.rag.speculative.min-draft-length:12}") int minDraftLength,
+      @Value("${app.rag.speculative.min-similarity:0.9}") double minSimilarity,
+      @Value("${app.rag.speculative.max-wait:2s}") Duration maxWait) {
+    this.delegate =
+        VectorStoreDocumentRetriever.builder()
+            .similarityThreshold(0.50)
+            .topK(retrievalCandidates)
+            .vectorStore(vectorStore)
+            .build();
+    this.blockingScheduler = blockingScheduler;
+    this.enabled = enabled;
+    this.minDraftLength = minDraftLength;
+    this.minSimilarity = minSimilarity;
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Whether speculative retrieval is turned on.
+   *
+   * @return true if drafts should be reported through {@link #prefetch(String, String)}
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts a background retrieval for the current draft of a chat, cancelling the previous one.
+   *
+   * @param chatId The chat the draft belongs to
+   * @param draft The current text in the message input
+   */
+  public void prefetch(String chatId, String draft) {
+    if (!enabled) {
+      return;
+    }
+    if (draft.strip().length() < minDraftLength) {
+      cancel(chatId);
+      return;
+    }
+
+    var current = speculations.get(chatId);
+    if (current != null && normalize(current.draft()).equals(normalize(draft))) {
+      return;
+    }
+
+    var retrievalNanos = new AtomicLong();
+    var result =
+        Mono.fromCallable(
+                () -> {
+                  var start = System.nanoTime();
+                  var documents = delegate.retrieve(new Query(draft));
+                  retrievalNanos.set(System.nanoTime() - start);
+                  return documents;
+                })
+            .subscribeOn(blockingScheduler)
+            .toFuture();
+
+    var previous = speculations.put(chatId, new Speculation(draft, result, retrievalNanos));
+    if (previous != null) {
+      previous.result().cancel(true);
+    }
+  }
+
+  /**
+   * Cancels any speculative retrieval running for the chat.
+   *
+   * @param chatId The chat to cancel speculation for
+   */
+  public void cancel(String chatId) {
+    var speculation = speculations.remove(chatId);
+    if (speculation != null) {
+      speculation.result().cancel(true);
+    }
+  }
+
+  /**
+   * Wraps a query transformer so that it only runs when the submitted message cannot be served from
+   * a speculative result. Speculation is keyed on the raw draft, so the query of a hit must not be
+   * rewritten, and skipping the transformer also takes its LLM call off the hit path.
+   *
+   * @param transformer The transformer to run on a miss, typically the query rewrite
+   * @return A transformer that claims the speculation of the chat or delegates
+   */
+  public QueryTransformer skipOnHit(QueryTransformer transformer) {
+    return query -> {
+      var speculation = claim(query);
+      if (speculation == null) {
+        return transformer.transform(query);
+      }
+      var context = new HashMap<>(query.context());
+      context.put(SPECULATION_KEY, speculation);
+      return query.mutate().context(context).build();
+    };
+  }
+
+  @Override
+  public List<Document> retrieve(Query query) {
+    if (!enabled) {
+      return delegate.retrieve(query);
+    }
+
+    var chatId = (String) query.context().get(ChatMemory.CONVERSATION_ID);
+    if (query.context().get(SPECULATION_KEY) instanceof Speculation speculation) {
+      var waitStart = System.nanoTime();
+      try {
+        var documents = speculation.result().get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        var waited = System.nanoTime() - waitStart;
+        hits.incrementAndGet();
+        savedNanos.addAndGet(Math.max(0, speculation.retrievalNanos().get() - waited));
+        log.debug("Speculative retrieval hit for chat {}", chatId);
+        return documents;
+      } catch (Exception e) {
+        // The query was not rewritten, so the fallback searches for the submitted text
+        speculation.result().cancel(true);
+        log.debug("Speculative retrieval failed for chat {}, retrieving normally", chatId, e);
+      }
+    } else if (chatId != null) {
+      cancel(chatId);
+    }
+
+    misses.incrementAndGet();
+    return delegate.retrieve(query);
+  }
+
+  /**
+   * Gets the speculation statistics.
+   *
+   * @return hit, miss and time saved counters since startup
+   */
+  public Stats getStats() {
+    return new Stats(hits.get(), misses.get(), Duration.ofNanos(savedNanos.get()));
+  }
+
+  /** Takes the speculation of the chat if the submitted text is close to its draft. */
+  private Speculation claim(Query query) {
+    if (!enabled) {
+      return null;
+    }
+    var chatId = (String) query.context().get(ChatMemory.CONVERSATION_ID);
+    var userText = (String) query.context().get(USER_TEXT_KEY);
+    var speculation = chatId != null ? speculations.remove(chatId) : null;
+    if (speculation == null) {
+      return null;
+    }
+    if (userText != null && isClose(speculation.draft(), userText)) {
+      return speculation;
+    }
+    speculation.result().cancel(true);
+    return null;
+  }
+
+  private boolean isClose(String draft, String submitted) {
+    var a = normalize(draft);
+    var b = normalize(submitted);
+    if (a.equals(b)) {
+      return true;
+    }
+
+    // Jaccard similarity of the word sets
+    var wordsA = new HashSet<>(Arrays.asList(a.split(" ")));
+    var wordsB = new HashSet<>(Arrays.asList(b.split(" ")));
+    var union = new HashSet<>(wordsA);
+    union.addAll(wordsB);
+    wordsA.retainAll(wordsB);
+    return (double) wordsA.size() / union.size() >= minSimilarity;
+  }
+
+  private static String normalize(String text) {
+    return text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+}
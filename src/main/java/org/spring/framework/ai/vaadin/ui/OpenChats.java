@@ -0,0 +1,62 @@
+package org.spring.framework.ai.vaadin.ui;
+
+import com.vaadin.flow.spring.annotation.VaadinSessionScope;
+import jakarta.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.spring.framework.ai.vaadin.service.Assistant;
+import org.spring.framework.ai.vaadin.service.ResumableStreams;
+import org.spring.framework.ai.vaadin.service.SpeculativeRetriever;
+import org.springframework.stereotype.Component;
+
+/**
+ * The chats opened in a Vaadin session.
+ *
+ * <p>The services keep per-chat state (history, attachments, answer buffers) until the chat is
+ * closed. Views close their chat when the user starts a new one; chats that are still open when
+ * the session is destroyed, e.g. because it expired after the browser was closed, are closed then.
+ */
+@Component
+@VaadinSessionScope
+public class OpenChats {
+
+  private final Assistant assistant;
+  private final ResumableStreams resumableStreams;
+  private final SpeculativeRetriever speculativeRetriever;
+  private final Set<String> chatIds = ConcurrentHashMap.newKeySet();
+
+  public OpenChats(
+      Assistant assistant,
+      ResumableStreams resumableStreams,
+      SpeculativeRetriever speculativeRetriever) {
+    this.assistant = assistant;
+    this.resumableStreams = resumableStreams;
+    this.speculativeRetriever = speculativeRetriever;
+  }
+
+  /**
+   * Registers a chat, so that it is closed with the session.
+   *
+   * @param chatId The chat that was opened
+   */
+  public void open(String chatId) {
+    chatIds.add(chatId);
+  }
+
+  /**
+   * Cancels the work running for a chat and drops its state.
+   *
+   * @param chatId The chat to close
+   */
+  public void close(String chatId) {
+    chatIds.remove(chatId);
+    speculativeRetriever.cancel(chatId);
+    resumableStreams.cancel(chatId);
+    assistant.closeChat(chatId);
+  }
+
+  @PreDestroy
+  void closeAll() {
+    chatIds.forEach(this::close);
+  }
+}
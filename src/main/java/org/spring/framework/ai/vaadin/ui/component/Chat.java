@@ -21,6 +21,7 @@ public class Chat extends VerticalLayout {
   private static final int MAX_FILE_COUNT = 10;
   private static final int MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
   private static final String[] ACCEPTED_FILE_TYPES = {"image/*", "text/*", "application/pdf"};
+  private static final int DRAFT_DEBOUNCE_MS = 400;
 
   private final Upload upload;
   private final MessageInput messageInput;
@@ -128,6 +129,27 @@ public class Chat extends VerticalLayout {
     upload.clearFileList();
   }
 
+  /**
+   * Sets the listener for changes to the message draft. Input events are debounced, so the
+   * listener is only called once the user pauses typing.
+   *
+   * @param listener The listener to be notified with the current draft text
+   */
+  public void setDraftListener(ChatDraftListener listener) {
+    messageInput
+        .getElement()
+        .addEventListener(
+            "input",
+            event -> {
+              var draft = event.getEventData().getString("element.value");
+              if (draft != null) {
+                listener.onDraftChange(draft);
+              }
+            })
+        .addEventData("element.value")
+        .debounce(DRAFT_DEBOUNCE_MS);
+  }
+
   /**
    * Sets the listener for chat message submissions.
    *
@@ -147,4 +169,14 @@ public class Chat extends VerticalLayout {
      */
     void onSubmit(ChatMessage userMessage, ChatMessage assistantMessage);
   }
+
+  /** Listener interface for changes to the message draft. */
+  public interface ChatDraftListener {
+    /**
+     * Called when the user pauses while typing a message.
+     *
+     * @param draft The text currently in the message input
+     */
+    void onDraftChange(String draft);
+  }
 }
@@ -1,14 +1,50 @@
 package org.spring.framework.ai.vaadin.ui.component;
 
 import com.vaadin.flow.component.messages.MessageListItem;
+import java.time.Duration;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 public class ChatMessage {
+  /** Streamed text is sent at the latest this long after the previous update. */
+  public static final Duration MAX_UPDATE_DELAY = Duration.ofMillis(250);
+
+  // Streamed text is sent to the client at markdown block boundaries, at most this often
+  private static final long MIN_UPDATE_INTERVAL_NANOS = Duration.ofMillis(50).toNanos();
+  // ...and regardless of boundaries after the maximum delay or this many buffered characters
+  private static final long MAX_UPDATE_DELAY_NANOS = MAX_UPDATE_DELAY.toNanos();
+  private static final int MAX_PENDING_CHARS = 2000;
+  private static final String CODE_FENCE = "```";
+
+  /** What the message currently shows. */
+  private enum State {
+    /** The typing indicator or the queue position, until the first text arrives. */
+    PLACEHOLDER,
+    /** Text, possibly with more to come. */
+    TEXT
+  }
+
   private List<ChatAttachment> attachments;
   MessageListItem messageListItem = new MessageListItem();
   private final String TYPING_INDICATOR = "<div class='typing-indicator'></div>";
+  private State state = State.TEXT;
+  private final LongSupplier nanoTime;
+
+  // Streaming state: text not sent yet, the end of its last complete markdown block, and enough of
+  // the current line to recognize code fences
+  private final StringBuilder pending = new StringBuilder();
+  private final StringBuilder currentLine = new StringBuilder();
+  private int blockBoundary;
+  private boolean inCodeFence;
+  private long lastUpdateNanos;
 
   public ChatMessage(String role, String content, List<ChatAttachment> attachments) {
+    this(role, content, attachments, System::nanoTime);
+  }
+
+  ChatMessage(
+      String role, String content, List<ChatAttachment> attachments, LongSupplier nanoTime) {
+    this.nanoTime = nanoTime;
     var contentBuilder = new StringBuilder();
 
     if (attachments != null) {
@@ -45,6 +81,7 @@ public class ChatMessage {
     if (contentBuilder.isEmpty()) {
       // If no content, show typing indicator
       contentBuilder.append(TYPING_INDICATOR);
+      state = State.PLACEHOLDER;
     }
 
     messageListItem.setText(contentBuilder.toString());
@@ -72,15 +109,118 @@ public class ChatMessage {
   }
 
   /**
-   * Appends text to the message content.
+   * Appends text to the message content right away.
    *
    * @param text The text to append
    */
   public void appendText(String text) {
-    if (messageListItem.getText().equals(TYPING_INDICATOR)) {
+    flush(pending.length());
+    send(text);
+  }
+
+  /**
+   * Appends streamed text. The text is buffered and sent to the client as an append-only update
+   * once a markdown block is complete (a line break outside a code fence), so the client renders
+   * finished blocks instead of re-rendering the message for every token. Call {@link
+   * #flushIfDue()} periodically while streaming and {@link #finishStreaming()} when the stream
+   * ends.
+   *
+   * @param text The text to append
+   * @return true if an update was sent to the client
+   */
+  public boolean appendStreamingText(String text) {
+    pending.append(text);
+    scanBlocks(text);
+
+    var now = nanoTime.getAsLong();
+    var sinceUpdate = now - lastUpdateNanos;
+    if (lastUpdateNanos == 0
+        || sinceUpdate >= MAX_UPDATE_DELAY_NANOS
+        || pending.length() >= MAX_PENDING_CHARS) {
+      // The first text is shown right away
+      return flush(pending.length());
+    }
+    if (blockBoundary > 0 && sinceUpdate >= MIN_UPDATE_INTERVAL_NANOS) {
+      return flush(blockBoundary);
+    }
+    return false;
+  }
+
+  /**
+   * Sends buffered streamed text that has waited for {@link #MAX_UPDATE_DELAY}. Text is otherwise
+   * only sent when more text arrives, so without this it would be held back while the stream
+   * pauses, e.g. during a tool call.
+   *
+   * @return true if an update was sent to the client
+   */
+  public boolean flushIfDue() {
+    if (pending.isEmpty() || nanoTime.getAsLong() - lastUpdateNanos < MAX_UPDATE_DELAY_NANOS) {
+      return false;
+    }
+    return flush(pending.length());
+  }
+
+  /**
+   * Sends the text that is still buffered from streaming.
+   *
+   * @return true if an update was sent to the client
+   */
+  public boolean finishStreaming() {
+    return flush(pending.length());
+  }
+
+  /** Tracks the end of the last complete markdown block in the pending text. */
+  private void scanBlocks(String text) {
+    var offset = pending.length() - text.length();
+    for (int i = 0; i < text.length(); i++) {
+      var c = text.charAt(i);
+      if (c == '\n') {
+        if (currentLine.toString().stripLeading().startsWith(CODE_FENCE)) {
+          inCodeFence = !inCodeFence;
+        }
+        currentLine.setLength(0);
+        if (!inCodeFence) {
+          blockBoundary = offset + i + 1;
+        }
+      } else if (currentLine.length() < 16) {
+        currentLine.append(c);
+      }
+    }
+  }
+
+  private boolean flush(int length) {
+    if (length == 0) {
+      return false;
+    }
+    var text = pending.substring(0, length);
+    pending.delete(0, length);
+    blockBoundary = Math.max(0, blockBoundary - length);
+    send(text);
+    return true;
+  }
+
+  private void send(String text) {
+    if (state == State.PLACEHOLDER) {
       messageListItem.setText("");
+      state = State.TEXT;
     }
     messageListItem.appendText(text);
+    lastUpdateNanos = nanoTime.getAsLong();
+  }
+
+  /**
+   * Shows the position of the message in the generation queue until the first text arrives.
+   *
+   * @param position The 1-based queue position, or 0 when the generation has started
+   */
+  public void setQueuePosition(int position) {
+    if (state != State.PLACEHOLDER) {
+      return;
+    }
+    messageListItem.setText(
+        position > 0
+            ? "<div class='queue-status'>Waiting in queue (position " + position + ")</div>"
+            : TYPING_INDICATOR);
   }
 
   /**
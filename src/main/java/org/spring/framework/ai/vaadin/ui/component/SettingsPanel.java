@@ -2,6 +2,7 @@ package org.spring.framework.ai.vaadin.ui.component;
 
 import com.vaadin.flow.component.ClickEvent;
 import com.vaadin.flow.component.ComponentEventListener;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.html.H3;
@@ -11,17 +12,23 @@ import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.html.UnorderedList;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.upload.Upload;
 import com.vaadin.flow.server.streams.UploadHandler;
 import com.vaadin.flow.shared.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.spring.framework.ai.vaadin.service.RagContextService;
 import org.spring.framework.ai.vaadin.ui.util.CustomMultipartFile;
 
 public class SettingsPanel extends VerticalLayout {
 
+  private static final Logger log = LoggerFactory.getLogger(SettingsPanel.class);
+
   private final RagContextService ragContextService;
   private final TextArea systemMessageField;
   private final Checkbox useMcpField;
@@ -87,19 +94,46 @@ public class SettingsPanel extends VerticalLayout {
     updateFilesList();
   }
 
+  private static void showIngestionFailure(UI ui, String fileName, Throwable e) {
+    log.error("Failed to add {} to the context", fileName, e);
+    ui.access(
+        () ->
+            Notification.show(fileName + " could not be added to the context")
+                .addThemeVariants(NotificationVariant.LUMO_ERROR));
+  }
+
   private UploadHandler createUploadHandler() {
     return UploadHandler.inMemory(
         (meta, data) -> {
+          var ui = getUI().get();
           try {
             // Upload file to RAG context
-            ragContextService.addFileToContext(
-                new CustomMultipartFile(meta.fileName(), meta.contentType(), data));
-
-            // Update the files list
-            getUI().get().access(() -> updateFilesList());
+            ragContextService
+                .addFileToContext(
+                    new CustomMultipartFile(meta.fileName(), meta.contentType(), data))
+                .thenAccept(
+                    report ->
+                        // Update the files list
+                        ui.access(
+                            () -> {
+                              updateFilesList();
+                              if (report.droppedChunks() > 0) {
+                                Notification.show(
+                                    String.format(
+                                        "%s: skipped %d of %d chunks as near-duplicates",
+                                        meta.fileName(),
+                                        report.droppedChunks(),
+                                        report.totalChunks()));
+                              }
+                            }))
+                .exceptionally(
+                    e -> {
+                      showIngestionFailure(ui, meta.fileName(), e);
+                      return null;
+                    });
 
           } catch (Exception e) {
-            e.printStackTrace();
+            showIngestionFailure(ui, meta.fileName(), e);
           }
         });
   }
@@ -1,37 +1,73 @@
 package org.spring.framework.ai.vaadin.ui.view;
 
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.masterdetaillayout.MasterDetailLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.PreserveOnRefresh;
 import com.vaadin.flow.router.Route;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import org.spring.framework.ai.vaadin.service.Assistant;
 import org.spring.framework.ai.vaadin.service.Assistant.ChatOptions;
 import org.spring.framework.ai.vaadin.service.Assistant.Message;
+import org.spring.framework.ai.vaadin.service.AssistantMetrics;
 import org.spring.framework.ai.vaadin.service.AttachmentFile;
 import org.spring.framework.ai.vaadin.service.RagContextService;
+import org.spring.framework.ai.vaadin.service.ResumableStreams;
+import org.spring.framework.ai.vaadin.service.ResumableStreams.Generation;
+import org.spring.framework.ai.vaadin.service.SpeculativeRetriever;
+import org.spring.framework.ai.vaadin.ui.OpenChats;
 import org.spring.framework.ai.vaadin.ui.component.Chat;
 import org.spring.framework.ai.vaadin.ui.component.ChatHeader;
 import org.spring.framework.ai.vaadin.ui.component.ChatMessage;
 import org.spring.framework.ai.vaadin.ui.component.ChatMessage.ChatAttachment;
 import org.spring.framework.ai.vaadin.ui.component.SettingsPanel;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 
 /**
  * Main view for the Spring AI Assistant application. Provides a chat interface with settings panel
  * in a master-detail layout.
+ *
+ * <p>The view is preserved on refresh, so a reloaded page keeps its chat and resumes any answer
+ * that is still streaming from the server-side buffer.
  */
 @Route("")
 @PageTitle("Spring AI Assistant")
+@PreserveOnRefresh
 public class MainView extends MasterDetailLayout {
 
   private final Chat chat;
   private final SettingsPanel settingsPanel;
   private final Assistant assistant;
+  private final SpeculativeRetriever speculativeRetriever;
+  private final AssistantMetrics metrics;
+  private final ResumableStreams resumableStreams;
+  private final OpenChats openChats;
+  private final List<StreamingAnswer> streamingAnswers = new ArrayList<>();
+  private volatile UI attachedUi;
+  // Push connection state as of the last command run in the UI, readable without the session lock
+  private volatile boolean pushConnected = true;
   private String chatId;
 
-  public MainView(Assistant assistant, RagContextService ragContextService) {
+  public MainView(
+      Assistant assistant,
+      RagContextService ragContextService,
+      SpeculativeRetriever speculativeRetriever,
+      AssistantMetrics metrics,
+      ResumableStreams resumableStreams,
+      OpenChats openChats) {
     this.assistant = assistant;
+    this.speculativeRetriever = speculativeRetriever;
+    this.metrics = metrics;
+    this.resumableStreams = resumableStreams;
+    this.openChats = openChats;
     this.chatId = UUID.randomUUID().toString();
+    openChats.open(chatId);
 
     addClassNames("main-layout");
     setSizeFull();
@@ -54,6 +90,10 @@ public class MainView extends MasterDetailLayout {
     chat.addClassName("chat-component");
     chat.setSizeFull();
     chat.setSubmitListener(this::handleSubmit);
+    if (speculativeRetriever.isEnabled()) {
+      // Start retrieving context while the user is still typing
+      chat.setDraftListener(draft -> speculativeRetriever.prefetch(chatId, draft));
+    }
 
     // Create chat layout
     var chatContent = new VerticalLayout(chatHeader, chat);
@@ -77,16 +117,130 @@ public class MainView extends MasterDetailLayout {
     var attachmentFiles =
         userMessage.getAttachments().stream().map(this::chatAttachmentToAttachmentFile).toList();
 
-    var ui = getUI().get();
-    assistant.stream(chatId, userMessage.getText(), attachmentFiles, options)
-        .subscribe(
-            // Append to the assistantMessage as it streams
-            token -> ui.access(() -> {
-              chat.addClassName("streaming");
-              assistantMessage.appendText(token);
-            }),
-            error -> ui.access(() -> assistantMessage.appendText("Error: " + error.getMessage())),
-            () -> ui.access(() -> chat.removeClassName("streaming")));
+    var tokens =
+        assistant.stream(
+            chatId,
+            userMessage.getText(),
+            attachmentFiles,
+            options,
+            // Show the queue position while the request waits for capacity
+            position -> access(() -> assistantMessage.setQueuePosition(position)));
+
+    // The generation is owned by the buffer, so it keeps running while the view is detached
+    var generation = resumableStreams.start(chatId, UUID.randomUUID().toString(), tokens);
+    var answer = new StreamingAnswer(generation, assistantMessage);
+    streamingAnswers.add(answer);
+    answer.listen();
+  }
+
+  /**
+   * Runs a command in the attached UI, if any. Commands for a detached view are dropped; the view
+   * catches up from the buffer when it is attached again.
+   */
+  private void access(Runnable command) {
+    var ui = attachedUi;
+    if (ui != null) {
+      ui.access(
+          () -> {
+            pushConnected = isPushConnected(ui);
+            command.run();
+          });
+    }
+  }
+
+  /** Whether updates pushed to the UI currently reach the browser. Must hold the session lock. */
+  private static boolean isPushConnected(UI ui) {
+    var pushConnection = ui.getInternals().getPushConnection();
+    return pushConnection == null || pushConnection.isConnected();
+  }
+
+  /** An answer being streamed into a message of this view. */
+  private class StreamingAnswer implements ResumableStreams.Listener {
+    private final Generation generation;
+    private final ChatMessage message;
+    private final AssistantMetrics.PushCounter pushCounter = metrics.pushCounter();
+    private long offset;
+    private Disposable listening;
+    private Disposable flushTimer;
+
+    private StreamingAnswer(Generation generation, ChatMessage message) {
+      this.generation = generation;
+      this.message = message;
+    }
+
+    private void listen() {
+      // Send buffered text when the stream pauses, since only new tokens trigger an update
+      // otherwise. The timer also catches up after the push connection came back.
+      flushTimer =
+          Flux.interval(ChatMessage.MAX_UPDATE_DELAY).subscribe(tick -> access(this::onTick));
+      listening = generation.listen(this);
+    }
+
+    private void stopListening() {
+      if (listening != null) {
+        listening.dispose();
+        listening = null;
+      }
+      stopFlushTimer();
+    }
+
+    private void stopFlushTimer() {
+      if (flushTimer != null) {
+        flushTimer.dispose();
+        flushTimer = null;
+      }
+    }
+
+    private void onTick() {
+      if (pushConnected) {
+        deliver();
+        if (message.flushIfDue()) {
+          pushCounter.increment();
+        }
+      }
+    }
+
+    @Override
+    public void onTokens() {
+      // While the push connection is down, skip the update instead of queueing one per token;
+      // the next update after reconnecting delivers everything that was missed
+      if (pushConnected) {
+        access(this::deliver);
+      }
+    }
+
+    @Override
+    public void onEnd(Throwable error) {
+      access(
+          () -> {
+            stopFlushTimer();
+            deliver();
+            if (message.finishStreaming()) {
+              pushCounter.increment();
+            }
+            if (error != null) {
+              message.appendText("Error: " + error.getMessage());
+            }
+            streamingAnswers.remove(this);
+            if (streamingAnswers.isEmpty()) {
+              chat.removeClassName("streaming");
+            }
+            pushCounter.close();
+          });
+    }
+
+    /** Appends the tokens this message has not shown yet. Must hold the session lock. */
+    private void deliver() {
+      var chunk = generation.read(offset);
+      offset = chunk.offset();
+      if (chunk.truncated()) {
+        message.appendText(" … ");
+      }
+      if (!chunk.text().isEmpty() && message.appendStreamingText(chunk.text())) {
+        chat.addClassName("streaming");
+        pushCounter.increment();
+      }
+    }
   }
 
   /** Loads the chat history for the current chat ID. */
@@ -121,10 +275,33 @@ public class MainView extends MasterDetailLayout {
         chatAttachment.fileName(), chatAttachment.type(), chatAttachment.data());
   }
 
+  @Override
+  protected void onAttach(AttachEvent attachEvent) {
+    super.onAttach(attachEvent);
+    attachedUi = attachEvent.getUI();
+    // Resume answers that kept streaming while the view was detached, e.g. during a refresh
+    for (var answer : List.copyOf(streamingAnswers)) {
+      answer.deliver();
+      answer.listen();
+    }
+  }
+
+  @Override
+  protected void onDetach(DetachEvent detachEvent) {
+    super.onDetach(detachEvent);
+    attachedUi = null;
+    streamingAnswers.forEach(StreamingAnswer::stopListening);
+    speculativeRetriever.cancel(chatId);
+  }
+
   /** Resets the chat by closing the current session and creating a new one. */
   private void resetChat() {
-    assistant.closeChat(chatId);
+    streamingAnswers.forEach(StreamingAnswer::stopListening);
+    streamingAnswers.clear();
+    chat.removeClassName("streaming");
+    openChats.close(chatId);
     chatId = UUID.randomUUID().toString();
+    openChats.open(chatId);
     chat.clearMessages();
   }
 
@@ -0,0 +1,31 @@
+package org.spring.framework.ai.vaadin.loadtest;
+
+import java.time.Duration;
+import org.spring.framework.ai.vaadin.stub.HashingEmbeddingModel;
+import org.spring.framework.ai.vaadin.stub.StubChatModel;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+/** Replaces the OpenAI models with local stubs for load testing. */
+@Profile("loadtest")
+@TestConfiguration(proxyBeanMethods = false)
+public class LoadTestConfiguration {
+
+  @Bean
+  public ChatModel chatModel(
+      @Value("${loadtest.model.answer-tokens:400}") int answerTokens,
+      @Value("${loadtest.model.first-token-latency:500ms}") Duration firstTokenLatency,
+      @Value("${loadtest.model.tokens-per-second:50}") double tokensPerSecond) {
+    return StubChatModel.withThroughput(answerTokens, firstTokenLatency, tokensPerSecond);
+  }
+
+  @Bean
+  public EmbeddingModel embeddingModel(
+      @Value("${loadtest.embedding.latency:50ms}") Duration latency) {
+    return new HashingEmbeddingModel(384, latency);
+  }
+}
@@ -0,0 +1,368 @@
+package org.spring.framework.ai.vaadin.loadtest;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.spring.framework.ai.vaadin.SpringAiVaadinApplication;
+import org.spring.framework.ai.vaadin.service.Assistant;
+import org.spring.framework.ai.vaadin.service.GenerationScheduler;
+import org.spring.framework.ai.vaadin.service.ResumableStreams;
+import org.spring.framework.ai.vaadin.ui.component.ChatMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import reactor.core.publisher.Flux;
+
+/**
+ * Offline load test that runs an increasing number of concurrent chat sessions through {@link
+ * Assistant#stream} with stub models, and delivers the tokens the same way {@code MainView} does:
+ * through {@link ResumableStreams}, with one {@code UI.access} per notification that appends
+ * everything buffered since the previous update to a {@link ChatMessage}.
+ *
+ * <p>For every step it reports time to first token, token delivery latency (from the buffer
+ * notification to the update being applied under the session lock), throughput, pushes, an
+ * estimate of the live heap per session and the bytes allocated per streamed token. The saturation
+ * point is the first step whose p95 time to first token exceeds the single-step baseline by the
+ * configured factor.
+ *
+ * <p>Run with {@code ./mvnw -Ploadtest verify}. Settings are Spring properties, for example {@code
+ * -Dloadtest.args="--loadtest.sessions=1,10,100 --loadtest.model.tokens-per-second=80"}. With
+ * {@code --loadtest.execution-modes=virtual,bounded-elastic} the steps run once per {@code
+ * app.execution.mode}, each in a fresh application context, followed by a side-by-side summary.
+ */
+public class LoadTestDriver {
+
+  private static final String QUESTION = "How do I configure a Spring bean for the vector store?";
+
+  private record StepResult(
+      int sessions,
+      Samples ttft,
+      Samples delivery,
+      long tokens,
+      long pushes,
+      int errors,
+      double seconds,
+      long heapPerSession,
+      long allocatedPerToken) {}
+
+  private record RunResult(List<StepResult> steps, Optional<StepResult> saturated) {}
+
+  private final Assistant assistant;
+  private final GenerationScheduler generationScheduler;
+  private final ResumableStreams resumableStreams;
+  private final int messagesPerSession;
+
+  private LoadTestDriver(ConfigurableApplicationContext context) {
+    this.assistant = context.getBean(Assistant.class);
+    this.generationScheduler = context.getBean(GenerationScheduler.class);
+    this.resumableStreams = context.getBean(ResumableStreams.class);
+    var environment = context.getEnvironment();
+    this.messagesPerSession =
+        environment.getProperty("loadtest.messages-per-session", Integer.class, 3);
+
+    // Give retrieval something to search
+    var ragChunks = environment.getProperty("loadtest.rag-chunks", Integer.class, 1000);
+    var chunks = new ArrayList<Document>();
+    for (int i = 0; i < ragChunks; i++) {
+      chunks.add(new Document("Spring bean " + i + " configures the vector store for chunk " + i));
+    }
+    context.getBean(VectorStore.class).add(chunks);
+  }
+
+  public static void main(String[] args) throws Exception {
+    var modes = new SimpleCommandLinePropertySource(args).getProperty("loadtest.execution-modes");
+    if (modes == null) {
+      runContext(args);
+      return;
+    }
+
+    var results = new LinkedHashMap<String, RunResult>();
+    for (var mode : modes.split(",")) {
+      var modeArgs = Arrays.copyOf(args, args.length + 1);
+      modeArgs[args.length] = "--app.execution.mode=" + mode.strip();
+      System.out.println();
+      System.out.println("Execution mode " + mode.strip());
+      results.put(mode.strip(), runContext(modeArgs));
+    }
+    printComparison(results);
+  }
+
+  private static RunResult runContext(String[] args) throws InterruptedException {
+    try (var context =
+        new SpringApplicationBuilder(SpringAiVaadinApplication.class, LoadTestConfiguration.class)
+            .profiles("loadtest")
+            .run(args)) {
+      var environment = context.getEnvironment();
+      var steps =
+          Arrays.stream(environment.getProperty("loadtest.sessions", "1,2,4,8,16,32,64").split(","))
+              .map(String::strip)
+              .mapToInt(Integer::parseInt)
+              .toArray();
+      var saturationFactor =
+          environment.getProperty("loadtest.saturation-factor", Double.class, 2.0);
+
+      return new LoadTestDriver(context).run(steps, saturationFactor);
+    }
+  }
+
+  private RunResult run(int[] steps, double saturationFactor) throws InterruptedException {
+    var results = new ArrayList<StepResult>();
+    for (var sessions : steps) {
+      var result = runStep(sessions);
+      results.add(result);
+      print(results);
+    }
+
+    var baseline = results.getFirst().ttft().percentile(0.95);
+    var saturated =
+        results.stream()
+            .filter(result -> result.ttft().percentile(0.95) > baseline * saturationFactor)
+            .findFirst();
+    System.out.println(
+        saturated
+            .map(
+                result ->
+                    String.format(
+                        "Saturated at %d sessions (p95 TTFT %.0f ms > %.1f x baseline %.0f ms)",
+                        result.sessions(),
+                        result.ttft().percentile(0.95) / 1e6,
+                        saturationFactor,
+                        baseline / 1e6))
+            .orElse("No saturation within the tested range"));
+    System.out.println("Scheduler: " + generationScheduler.getStats());
+    return new RunResult(results, saturated);
+  }
+
+  private StepResult runStep(int sessions) throws InterruptedException {
+    var ttft = new Samples();
+    var delivery = new Samples();
+    var tokens = new AtomicLong();
+    var errors = new AtomicInteger();
+    var activeStreams = new AtomicInteger();
+    var uis = new ArrayList<SimulatedUi>();
+    for (int i = 0; i < sessions; i++) {
+      uis.add(new SimulatedUi());
+    }
+
+    var baselineHeap = liveHeap();
+    var baselineAllocated = allocatedBytes();
+    var heapWithSessions = new AtomicLong(-1);
+    var measured = new AtomicBoolean();
+    var sampler = Executors.newSingleThreadScheduledExecutor();
+    sampler.scheduleAtFixedRate(
+        () -> {
+          // Measure the live heap once while (almost) all sessions are streaming
+          if (activeStreams.get() >= Math.ceil(sessions * 0.9)
+              && measured.compareAndSet(false, true)) {
+            heapWithSessions.set(liveHeap());
+          }
+        },
+        100,
+        100,
+        TimeUnit.MILLISECONDS);
+
+    var start = System.nanoTime();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var ui : uis) {
+        executor.submit(() -> runSession(ui, ttft, delivery, tokens, errors, activeStreams));
+      }
+    }
+    var seconds = (System.nanoTime() - start) / 1e9;
+    var allocated = allocatedBytes() - baselineAllocated;
+    sampler.shutdownNow();
+
+    var heapPerSession =
+        heapWithSessions.get() < 0
+            ? -1
+            : Math.max(0, heapWithSessions.get() - baselineHeap) / sessions;
+    var pushes = uis.stream().mapToLong(SimulatedUi::getPushes).sum();
+    var allocatedPerToken = tokens.get() == 0 ? -1 : allocated / tokens.get();
+    return new StepResult(
+        sessions,
+        ttft,
+        delivery,
+        tokens.get(),
+        pushes,
+        errors.get(),
+        seconds,
+        heapPerSession,
+        allocatedPerToken);
+  }
+
+  /** Sends messages one after another, like a user waiting for each answer. */
+  private Void runSession(
+      SimulatedUi ui,
+      Samples ttft,
+      Samples delivery,
+      AtomicLong tokens,
+      AtomicInteger errors,
+      AtomicInteger activeStreams)
+      throws InterruptedException {
+    var chatId = UUID.randomUUID().toString();
+    for (int i = 0; i < messagesPerSession; i++) {
+      var assistantMessage = new ChatMessage("Assistant", null, null);
+      var done = new CountDownLatch(1);
+      var first = new AtomicBoolean(true);
+      var start = System.nanoTime();
+
+      activeStreams.incrementAndGet();
+      var generation =
+          resumableStreams.start(
+              chatId,
+              UUID.randomUUID().toString(),
+              assistant.stream(chatId, QUESTION, List.of(), null));
+      var offset = new AtomicLong();
+      // Like MainView, only count a push when the message changed
+      BooleanSupplier deliver =
+          () -> {
+            var chunk = generation.read(offset.get());
+            offset.set(chunk.offset());
+            if (chunk.text().isEmpty()) {
+              return false;
+            }
+            if (first.getAndSet(false)) {
+              ttft.add(System.nanoTime() - start);
+            }
+            return assistantMessage.appendStreamingText(chunk.text());
+          };
+      // Like the flush timer of MainView, sends text held back while the stream pauses
+      var flushTimer =
+          Flux.interval(ChatMessage.MAX_UPDATE_DELAY)
+              .subscribe(
+                  tick -> ui.access(() -> deliver.getAsBoolean() | assistantMessage.flushIfDue()));
+      generation.listen(
+          new ResumableStreams.Listener() {
+            @Override
+            public void onTokens() {
+              var notified = System.nanoTime();
+              tokens.incrementAndGet();
+              ui.access(
+                  () -> {
+                    delivery.add(System.nanoTime() - notified);
+                    return deliver.getAsBoolean();
+                  });
+            }
+
+            @Override
+            public void onEnd(Throwable error) {
+              flushTimer.dispose();
+              ui.access(
+                  () -> {
+                    var delivered = deliver.getAsBoolean();
+                    return assistantMessage.finishStreaming() || delivered;
+                  });
+              if (error != null) {
+                errors.incrementAndGet();
+              }
+              activeStreams.decrementAndGet();
+              done.countDown();
+            }
+          });
+      done.await();
+    }
+    assistant.closeChat(chatId);
+    return null;
+  }
+
+  /** Bytes allocated by all threads since JVM start, including the carriers of virtual threads. */
+  private static long allocatedBytes() {
+    return ((ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+  }
+
+  private static long liveHeap() {
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static void print(List<StepResult> results) {
+    System.out.println();
+    System.out.printf(
+        "%8s %10s %10s %10s %10s %10s %10s %10s %8s %14s %12s%n",
+        "sessions",
+        "ttft p50",
+        "ttft p95",
+        "dlv p50",
+        "dlv p95",
+        "dlv p99",
+        "tokens/s",
+        "pushes",
+        "errors",
+        "heap/session",
+        "alloc/token");
+    for (var result : results) {
+      System.out.printf(
+          "%8d %8.0fms %8.0fms %8.2fms %8.2fms %8.2fms %10.0f %10d %8d %12sKB %11sB%n",
+          result.sessions(),
+          result.ttft().percentile(0.5) / 1e6,
+          result.ttft().percentile(0.95) / 1e6,
+          result.delivery().percentile(0.5) / 1e6,
+          result.delivery().percentile(0.95) / 1e6,
+          result.delivery().percentile(0.99) / 1e6,
+          result.tokens() / result.seconds(),
+          result.pushes(),
+          result.errors(),
+          result.heapPerSession() < 0 ? "n/a" : String.valueOf(result.heapPerSession() / 1024),
+          result.allocatedPerToken() < 0 ? "n/a" : String.valueOf(result.allocatedPerToken()));
+    }
+  }
+
+  /** Prints the saturation point and the largest step of every execution mode. */
+  private static void printComparison(Map<String, RunResult> results) {
+    System.out.println();
+    System.out.printf(
+        "%-16s %12s %8s %10s %10s %14s%n",
+        "mode", "saturated at", "sessions", "ttft p95", "tokens/s", "heap/session");
+    results.forEach(
+        (mode, result) -> {
+          var largest = result.steps().getLast();
+          System.out.printf(
+              "%-16s %12s %8d %8.0fms %10.0f %12sKB%n",
+              mode,
+              result.saturated().map(step -> String.valueOf(step.sessions())).orElse("-"),
+              largest.sessions(),
+              largest.ttft().percentile(0.95) / 1e6,
+              largest.tokens() / largest.seconds(),
+              largest.heapPerSession() < 0
+                  ? "n/a"
+                  : String.valueOf(largest.heapPerSession() / 1024));
+        });
+  }
+
+  /** Thread-safe collection of nanosecond samples. */
+  private static final class Samples {
+    private long[] values = new long[1024];
+    private int size;
+
+    synchronized void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    synchronized double percentile(double percentile) {
+      if (size == 0) {
+        return 0;
+      }
+      var sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+      var index = (int) Math.ceil(percentile * size) - 1;
+      return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.spring.framework.ai.vaadin.loadtest;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Mimics how {@code UI.access} runs commands: commands are queued, and whichever thread obtains
+ * the session lock runs all pending commands before releasing it and pushing the changes. A push
+ * is only counted if one of the commands changed the UI. One instance corresponds to one browser
+ * session.
+ */
+class SimulatedUi {
+
+  private final ReentrantLock sessionLock = new ReentrantLock();
+  private final ConcurrentLinkedQueue<BooleanSupplier> pendingCommands =
+      new ConcurrentLinkedQueue<>();
+  private long pushes;
+
+  /**
+   * Runs a command under the session lock.
+   *
+   * @param command The command, returning whether it changed the UI
+   */
+  void access(BooleanSupplier command) {
+    pendingCommands.add(command);
+    sessionLock.lock();
+    try {
+      BooleanSupplier pending;
+      var changed = false;
+      while ((pending = pendingCommands.poll()) != null) {
+        changed |= pending.getAsBoolean();
+      }
+      if (changed) {
+        pushes++;
+      }
+    } finally {
+      sessionLock.unlock();
+    }
+  }
+
+  long getPushes() {
+    sessionLock.lock();
+    try {
+      return pushes;
+    } finally {
+      sessionLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.spring.framework.ai.vaadin.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class AttachmentExtractorTest {
+
+  private final AttachmentExtractor extractor = new AttachmentExtractor();
+
+  @Test
+  void extractsWholeDocumentWithinLimit() {
+    var extraction = extractor.extract(text("Configure the vector store bean."), 1000);
+
+    assertThat(extraction.text()).contains("Configure the vector store bean.");
+    assertThat(extraction.tokens()).isPositive();
+    assertThat(extraction.complete()).isTrue();
+  }
+
+  @Test
+  void stopsAtTokenLimit() {
+    // Spans many tokenization segments, so the parse is aborted from the writer
+    var words = words(50000);
+    var extraction = extractor.extract(text(words), 100);
+
+    assertThat(extraction.tokens()).isEqualTo(100);
+    assertThat(extraction.complete()).isFalse();
+    assertThat(words).startsWith(extraction.text().stripLeading());
+    assertThat(extraction.text().length()).isLessThan(2000);
+  }
+
+  @Test
+  void isCompleteOnlyWhenNothingWasCutOff() {
+    var attachment = text(words(200));
+    var tokens = extractor.extract(attachment, Integer.MAX_VALUE).tokens();
+
+    var exact = extractor.extract(attachment, tokens);
+    var cut = extractor.extract(attachment, tokens - 1);
+
+    assertThat(exact.complete()).isTrue();
+    assertThat(exact.tokens()).isEqualTo(tokens);
+    assertThat(cut.complete()).isFalse();
+    assertThat(cut.tokens()).isEqualTo(tokens - 1);
+  }
+
+  private static AttachmentFile text(String content) {
+    return new AttachmentFile("notes.txt", "text/plain", content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String words(int count) {
+    return IntStream.range(0, count).mapToObj(i -> "word" + i).collect(Collectors.joining(" "));
+  }
+}
@@ -0,0 +1,49 @@
+package org.spring.framework.ai.vaadin.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.spring.framework.ai.vaadin.stub.HashingEmbeddingModel;
+import org.springframework.ai.document.Document;
+
+class ChatAttachmentIndexTest {
+
+  private static final String MANUAL =
+      "The vector store bean is configured with an embedding model and a similarity threshold.";
+
+  private final ChatAttachmentIndex index =
+      new ChatAttachmentIndex(new HashingEmbeddingModel(), true, 200000, 6, 0.4);
+
+  @Test
+  void returnsExcerptsOfOwnChat() {
+    index.add("chat", "manual.txt", MANUAL);
+
+    var excerpts = index.search("chat", "How is the vector store bean configured?");
+
+    assertThat(excerpts).extracting(Document::getText).containsExactly(MANUAL);
+    assertThat(excerpts.getFirst().getMetadata())
+        .containsEntry(ChatAttachmentIndex.FILE_NAME, "manual.txt");
+  }
+
+  @Test
+  void doesNotReturnExcerptsOfOtherChats() {
+    index.add("chat", "manual.txt", MANUAL);
+
+    assertThat(index.search("other", "How is the vector store bean configured?")).isEmpty();
+  }
+
+  @Test
+  void skipsExcerptsBelowSimilarityThreshold() {
+    index.add("chat", "manual.txt", MANUAL);
+
+    assertThat(index.search("chat", "Which thumbnails does Tika render?")).isEmpty();
+  }
+
+  @Test
+  void forgetsAttachmentsOfClearedChat() {
+    index.add("chat", "manual.txt", MANUAL);
+    index.clear("chat");
+
+    assertThat(index.search("chat", "How is the vector store bean configured?")).isEmpty();
+  }
+}
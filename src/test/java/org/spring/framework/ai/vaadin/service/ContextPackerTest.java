@@ -0,0 +1,103 @@
+package org.spring.framework.ai.vaadin.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.spring.framework.ai.vaadin.stub.HashingEmbeddingModel;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+class ContextPackerTest {
+
+  private static final Query QUERY = new Query("How do I configure the vector store?");
+
+  private final AtomicInteger embeddingCalls = new AtomicInteger();
+  private final CachingEmbeddingModel embeddingModel =
+      new CachingEmbeddingModel(
+          new HashingEmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+              embeddingCalls.incrementAndGet();
+              return super.call(request);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+              embeddingCalls.incrementAndGet();
+              return super.embed(document);
+            }
+          },
+          100);
+
+  @Test
+  void skipsRedundantDocument() {
+    var first = document("Configure the vector store bean with an embedding model", 0.9);
+    var duplicate = document("Configure the vector store bean with an embedding model", 0.85);
+    var other = document("Tika reads PDF attachments page by page", 0.6);
+    var packer = new ContextPacker(embeddingModel, 0.7, 2, 2000);
+
+    var packed = packer.process(QUERY, List.of(first, duplicate, other));
+
+    assertThat(packed).containsExactly(first, other);
+  }
+
+  @Test
+  void packsDocumentsInMmrOrderWithinTokenBudget() {
+    var first = document("Alpha beta gamma delta epsilon zeta eta theta iota kappa", 0.9);
+    var tooLarge = document("Lambda mu nu xi omicron pi rho sigma tau upsilon phi chi psi", 0.8);
+    var small = document("Omega", 0.7);
+    var estimator = new JTokkitTokenCountEstimator();
+    var budget = estimator.estimate(first.getText()) + estimator.estimate(small.getText());
+    var packer = new ContextPacker(embeddingModel, 0.7, 6, budget);
+
+    var packed = packer.process(QUERY, List.of(first, tooLarge, small));
+
+    assertThat(packed).containsExactly(first, small);
+  }
+
+  @Test
+  void reusesEmbeddingsFromIngestion() {
+    var documents =
+        List.of(
+            document("Configure the vector store bean", 0.9),
+            document("Tika reads PDF attachments", 0.8));
+    documents.forEach(embeddingModel::embed);
+    var calls = embeddingCalls.get();
+    var packer = new ContextPacker(embeddingModel, 0.7, 6, 2000);
+
+    var packed = packer.process(QUERY, documents);
+
+    assertThat(packed).hasSize(2);
+    assertThat(embeddingCalls).hasValue(calls);
+  }
+
+  @Test
+  void packsInScoreOrderWhenEmbeddingFails() {
+    var failing =
+        new CachingEmbeddingModel(
+            new HashingEmbeddingModel() {
+              @Override
+              public EmbeddingResponse call(EmbeddingRequest request) {
+                throw new IllegalStateException("Embedding service unavailable");
+              }
+            },
+            100);
+    var low = document("Tika reads PDF attachments", 0.5);
+    var high = document("Configure the vector store bean", 0.9);
+    var middle = document("Spring AI supports several vector stores", 0.7);
+    var packer = new ContextPacker(failing, 0.7, 2, 2000);
+
+    var packed = packer.process(QUERY, List.of(low, high, middle));
+
+    assertThat(packed).containsExactly(high, middle);
+  }
+
+  private static Document document(String text, double score) {
+    return Document.builder().text(text).score(score).build();
+  }
+}
@@ -0,0 +1,199 @@
+package org.spring.framework.ai.vaadin.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.spring.framework.ai.vaadin.service.GenerationScheduler.GenerationRejectedException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class GenerationSchedulerTest {
+
+  private final List<String> startOrder = new CopyOnWriteArrayList<>();
+
+  @Test
+  void limitsGenerationsInFlight() {
+    var scheduler = new GenerationScheduler(2, 10, Integer.MAX_VALUE);
+
+    var first = schedule(scheduler, "first", "a", 10);
+    var second = schedule(scheduler, "second", "b", 10);
+    var third = schedule(scheduler, "third", "c", 10);
+
+    assertThat(startOrder).containsExactly("first", "second");
+    assertThat(third.positions).containsExactly(1);
+    assertThat(scheduler.getStats().inFlight()).isEqualTo(2);
+    assertThat(scheduler.getStats().queued()).isEqualTo(1);
+
+    first.complete("answer");
+
+    assertThat(first.received).containsExactly("answer");
+    assertThat(first.completed).isTrue();
+    assertThat(startOrder).containsExactly("first", "second", "third");
+    assertThat(third.positions).containsExactly(1, 0);
+
+    second.complete();
+    third.complete();
+    assertThat(scheduler.getStats().inFlight()).isZero();
+    assertThat(scheduler.getStats().started()).isEqualTo(3);
+  }
+
+  @Test
+  void servesSessionsInTurns() {
+    var scheduler = new GenerationScheduler(1, 10, Integer.MAX_VALUE);
+
+    var running = schedule(scheduler, "running", "other", 10);
+    var a1 = schedule(scheduler, "a1", "a", 10);
+    var a2 = schedule(scheduler, "a2", "a", 10);
+    var b1 = schedule(scheduler, "b1", "b", 10);
+
+    assertThat(a1.positions).containsExactly(1);
+    assertThat(a2.positions).containsExactly(2, 3);
+    assertThat(b1.positions).containsExactly(2);
+
+    running.complete();
+    a1.complete();
+    b1.complete();
+
+    assertThat(startOrder).containsExactly("running", "a1", "b1", "a2");
+  }
+
+  @Test
+  void rejectsWhenQueueIsFull() {
+    var scheduler = new GenerationScheduler(1, 1, Integer.MAX_VALUE);
+
+    schedule(scheduler, "running", "a", 10);
+    schedule(scheduler, "waiting", "b", 10);
+    var rejected = schedule(scheduler, "rejected", "c", 10);
+
+    assertThat(rejected.error).isInstanceOf(GenerationRejectedException.class);
+    assertThat(rejected.started).isFalse();
+    assertThat(scheduler.getStats().rejected()).isEqualTo(1);
+    assertThat(scheduler.getStats().queued()).isEqualTo(1);
+  }
+
+  @Test
+  void cancelsWaitingGeneration() {
+    var scheduler = new GenerationScheduler(1, 10, Integer.MAX_VALUE);
+
+    var running = schedule(scheduler, "running", "a", 10);
+    var waiting = schedule(scheduler, "waiting", "b", 10);
+    var next = schedule(scheduler, "next", "c", 10);
+    waiting.subscription.dispose();
+
+    assertThat(scheduler.getStats().queued()).isEqualTo(1);
+    assertThat(next.positions).containsExactly(2, 1);
+
+    running.complete();
+
+    assertThat(waiting.started).isFalse();
+    assertThat(startOrder).containsExactly("running", "next");
+    next.complete();
+    assertThat(scheduler.getStats().inFlight()).isZero();
+  }
+
+  @Test
+  void cancelsRunningGenerationAndReleasesItsSlot() {
+    var scheduler = new GenerationScheduler(1, 10, Integer.MAX_VALUE);
+
+    var running = schedule(scheduler, "running", "a", 10);
+    var waiting = schedule(scheduler, "waiting", "b", 10);
+    running.subscription.dispose();
+
+    assertThat(running.cancelled).isTrue();
+    assertThat(waiting.started).isTrue();
+    assertThat(scheduler.getStats().inFlight()).isEqualTo(1);
+
+    // Signals of the cancelled generation must not release the slot a second time
+    running.complete();
+    assertThat(scheduler.getStats().inFlight()).isEqualTo(1);
+
+    waiting.complete();
+    assertThat(scheduler.getStats().inFlight()).isZero();
+  }
+
+  @Test
+  void releasesSlotWhenGenerationFails() {
+    var scheduler = new GenerationScheduler(1, 10, Integer.MAX_VALUE);
+
+    var failing = schedule(scheduler, "failing", "a", 10);
+    var waiting = schedule(scheduler, "waiting", "b", 10);
+    failing.output.tryEmitError(new IllegalStateException("Rate limited"));
+
+    assertThat(failing.error).hasMessage("Rate limited");
+    assertThat(waiting.started).isTrue();
+    assertThat(scheduler.getStats().inFlight()).isEqualTo(1);
+  }
+
+  @Test
+  void retriesWhenTokenWindowMovesOn() {
+    var scheduler = new GenerationScheduler(10, 10, 100, Duration.ofMillis(200));
+
+    var first = schedule(scheduler, "first", "a", 80);
+    first.complete();
+    var second = schedule(scheduler, "second", "b", 50);
+
+    // The first generation still counts against the budget until the window has passed
+    assertThat(second.started).isFalse();
+    assertThat(second.positions).containsExactly(1);
+
+    await().atMost(Duration.ofSeconds(5)).until(() -> second.started);
+    assertThat(second.positions).containsExactly(1, 0);
+  }
+
+  @Test
+  void admitsGenerationLargerThanBudgetWhenWindowIsEmpty() {
+    var scheduler = new GenerationScheduler(10, 10, 100, Duration.ofMinutes(1));
+
+    var large = schedule(scheduler, "large", "a", 500);
+
+    assertThat(large.started).isTrue();
+  }
+
+  private Generation schedule(
+      GenerationScheduler scheduler, String name, String sessionId, int tokens) {
+    var generation = new Generation(name);
+    generation.subscription =
+        scheduler
+            .schedule(sessionId, tokens, generation::supply, generation.positions::add)
+            .subscribe(
+                generation.received::add,
+                error -> generation.error = error,
+                () -> generation.completed = true);
+    return generation;
+  }
+
+  /** A generation whose output is emitted by the test. */
+  private final class Generation {
+    private final String name;
+    private final Sinks.Many<String> output = Sinks.many().unicast().onBackpressureBuffer();
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final List<Integer> positions = new CopyOnWriteArrayList<>();
+    private volatile boolean started;
+    private volatile boolean cancelled;
+    private volatile boolean completed;
+    private volatile Throwable error;
+    private Disposable subscription;
+
+    private Generation(String name) {
+      this.name = name;
+    }
+
+    private Flux<String> supply() {
+      started = true;
+      startOrder.add(name);
+      return output.asFlux().doOnCancel(() -> cancelled = true);
+    }
+
+    private void complete(String... tokens) {
+      for (var token : tokens) {
+        output.tryEmitNext(token);
+      }
+      output.tryEmitComplete();
+    }
+  }
+}
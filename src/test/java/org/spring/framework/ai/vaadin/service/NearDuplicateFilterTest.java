@@ -0,0 +1,124 @@
+package org.spring.framework.ai.vaadin.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+class NearDuplicateFilterTest {
+
+  private final NearDuplicateFilter filter = new NearDuplicateFilter(true, 0.85);
+
+  @Test
+  void dropsExactDuplicateInSameBatch() {
+    var result = filter.filter(List.of(new Document(words(0, 120)), new Document(words(0, 120))));
+
+    assertThat(result.documents()).hasSize(1);
+    assertThat(result.report().droppedChunks()).isEqualTo(1);
+    assertThat(result.report().tokensSaved()).isPositive();
+  }
+
+  @Test
+  void dropsNearDuplicateOfCommittedChunk() {
+    filter.commit(filter.filter(List.of(new Document(words(0, 120)))));
+
+    // One word changed in the middle
+    var changed = words(0, 120).replace(" word60 ", " changed ");
+    var result = filter.filter(List.of(new Document(changed)));
+
+    assertThat(result.documents()).isEmpty();
+    assertThat(result.report().droppedChunks()).isEqualTo(1);
+  }
+
+  @Test
+  void keepsTextBelowThreshold() {
+    filter.commit(filter.filter(List.of(new Document(words(0, 120)))));
+
+    // Half of the words are shared
+    var result = filter.filter(List.of(new Document(words(60, 180))));
+
+    assertThat(result.documents()).hasSize(1);
+    assertThat(result.report().droppedChunks()).isZero();
+  }
+
+  @Test
+  void comparesTextShorterThanShingle() {
+    var result =
+        filter.filter(
+            List.of(
+                new Document("Hello world"),
+                new Document("hello, world!"),
+                new Document("Goodbye world")));
+
+    assertThat(result.documents())
+        .extracting(Document::getText)
+        .containsExactly("Hello world", "Goodbye world");
+  }
+
+  @Test
+  void ignoresLeadingNonWordCharacter() {
+    filter.commit(filter.filter(List.of(new Document("Hello world"))));
+
+    var result =
+        filter.filter(List.of(new Document("- Hello world"), new Document(". " + words(0, 120))));
+    filter.commit(result);
+    var again = filter.filter(List.of(new Document(words(0, 120))));
+
+    assertThat(result.documents())
+        .extracting(Document::getText)
+        .containsExactly(". " + words(0, 120));
+    assertThat(again.documents()).isEmpty();
+  }
+
+  @Test
+  void dropsDuplicateOfPendingChunk() {
+    // Two files ingested concurrently, neither stored yet
+    var first = filter.filter(List.of(new Document(words(0, 120))));
+    var second = filter.filter(List.of(new Document(words(0, 120).replace(" word60 ", " x "))));
+
+    assertThat(first.documents()).hasSize(1);
+    assertThat(second.documents()).isEmpty();
+    assertThat(second.report().droppedChunks()).isEqualTo(1);
+  }
+
+  @Test
+  void forgetsReleasedChunks() {
+    var first = filter.filter(List.of(new Document(words(0, 120))));
+    // The write failed
+    filter.release(first);
+    var retry = filter.filter(List.of(new Document(words(0, 120))));
+
+    assertThat(first.documents()).hasSize(1);
+    assertThat(retry.documents()).hasSize(1);
+
+    filter.commit(retry);
+    assertThat(filter.filter(List.of(new Document(words(0, 120)))).documents()).isEmpty();
+  }
+
+  @Test
+  void ignoresCommitAfterRelease() {
+    var result = filter.filter(List.of(new Document(words(0, 120))));
+    filter.release(result);
+    filter.commit(result);
+
+    assertThat(filter.filter(List.of(new Document(words(0, 120)))).documents()).hasSize(1);
+  }
+
+  @Test
+  void keepsEverythingWhenDisabled() {
+    var disabled = new NearDuplicateFilter(false, 0.85);
+    var chunks = List.of(new Document(words(0, 120)), new Document(words(0, 120)));
+
+    var result = disabled.filter(chunks);
+
+    assertThat(result.documents()).hasSize(2);
+    assertThat(result.report().droppedChunks()).isZero();
+  }
+
+  private static String words(int from, int to) {
+    return IntStream.range(from, to).mapToObj(i -> "word" + i).collect(Collectors.joining(" "));
+  }
+}
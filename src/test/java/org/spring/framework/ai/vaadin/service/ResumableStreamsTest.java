@@ -0,0 +1,160 @@
+package org.spring.framework.ai.vaadin.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class ResumableStreamsTest {
+
+  @Test
+  void readsTokensAfterOffset() {
+    var streams = new ResumableStreams(16);
+    var tokens = Sinks.many().unicast().<String>onBackpressureBuffer();
+    var generation = streams.start("chat", "message", tokens.asFlux());
+
+    tokens.tryEmitNext("Hello");
+    tokens.tryEmitNext(" world");
+    var first = generation.read(0);
+    tokens.tryEmitNext("!");
+    var second = generation.read(first.offset());
+
+    assertThat(first).isEqualTo(new ResumableStreams.Chunk("Hello world", 2, false));
+    assertThat(second).isEqualTo(new ResumableStreams.Chunk("!", 3, false));
+    assertThat(generation.read(second.offset()).text()).isEmpty();
+  }
+
+  @Test
+  void growsBufferUpToConfiguredSize() {
+    var streams = new ResumableStreams(1000);
+    var generation = streams.start("chat", "message", Flux.fromIterable(tokens(0, 500)));
+
+    var chunk = generation.read(0);
+
+    assertThat(chunk.text()).isEqualTo(String.join("", tokens(0, 500)));
+    assertThat(chunk.offset()).isEqualTo(500);
+    assertThat(chunk.truncated()).isFalse();
+  }
+
+  @Test
+  void evictsOldestTokensAfterWrapAround() {
+    var streams = new ResumableStreams(100);
+    var tokens = Sinks.many().unicast().<String>onBackpressureBuffer();
+    var generation = streams.start("chat", "message", tokens.asFlux());
+
+    tokens(0, 90).forEach(tokens::tryEmitNext);
+    var partial = generation.read(0);
+    tokens(90, 250).forEach(tokens::tryEmitNext);
+
+    // The reader at offset 90 missed the tokens 90 to 149, which were evicted
+    var resumed = generation.read(partial.offset());
+    assertThat(resumed.truncated()).isTrue();
+    assertThat(resumed.text()).isEqualTo(String.join("", tokens(150, 250)));
+    assertThat(resumed.offset()).isEqualTo(250);
+
+    var current = generation.read(resumed.offset());
+    assertThat(current.truncated()).isFalse();
+    assertThat(current.text()).isEmpty();
+  }
+
+  @Test
+  void notifiesListenersAndRemovesEndedGeneration() {
+    var streams = new ResumableStreams(16);
+    var tokens = Sinks.many().unicast().<String>onBackpressureBuffer();
+    var generation = streams.start("chat", "message", tokens.asFlux());
+    var notifications = new AtomicInteger();
+    var ends = new ArrayList<Throwable>();
+    generation.listen(listener(notifications, ends));
+
+    tokens.tryEmitNext("token");
+    assertThat(notifications).hasValue(1);
+    assertThat(streams.findActive("chat")).containsExactly(generation);
+
+    var error = new IllegalStateException("Model failed");
+    tokens.tryEmitError(error);
+
+    assertThat(ends).containsExactly(error);
+    assertThat(generation.isEnded()).isTrue();
+    assertThat(streams.findActive("chat")).isEmpty();
+    assertThat(generation.read(0).text()).isEqualTo("token");
+  }
+
+  @Test
+  void callsListenerRegisteredAfterEnd() {
+    var streams = new ResumableStreams(16);
+    var generation = streams.start("chat", "message", Flux.just("a", "b"));
+    var ends = new ArrayList<Throwable>();
+
+    generation.listen(listener(new AtomicInteger(), ends));
+
+    assertThat(ends).hasSize(1).containsNull();
+    assertThat(generation.read(0).text()).isEqualTo("ab");
+  }
+
+  @Test
+  void cancelsChatGenerations() {
+    var streams = new ResumableStreams(16);
+    var cancelled = new AtomicBoolean();
+    var tokens = Sinks.many().unicast().<String>onBackpressureBuffer();
+    var generation =
+        streams.start("chat", "message", tokens.asFlux().doOnCancel(() -> cancelled.set(true)));
+    var other = streams.start("other", "message", Flux.never());
+
+    streams.cancel("chat");
+
+    assertThat(cancelled).isTrue();
+    assertThat(generation.isEnded()).isTrue();
+    assertThat(tokens.tryEmitNext("late").isSuccess()).isFalse();
+    assertThat(streams.findActive("other")).containsExactly(other);
+  }
+
+  @Test
+  void cancelsStreamWhenCancelledWhileSubscribing() {
+    var streams = new ResumableStreams(16);
+    var cancelled = new AtomicBoolean();
+    var generationDuringSubscribe = new AtomicReference<ResumableStreams.Generation>();
+    var tokens =
+        Flux.<String>never()
+            .doOnSubscribe(
+                subscription -> {
+                  // Cancelled before start() has stored the subscription
+                  var generation = streams.findActive("chat").getFirst();
+                  generationDuringSubscribe.set(generation);
+                  generation.cancel();
+                })
+            .doOnCancel(() -> cancelled.set(true));
+
+    var generation = streams.start("chat", "message", tokens);
+
+    assertThat(generationDuringSubscribe).hasValue(generation);
+    assertThat(generation.isEnded()).isTrue();
+    assertThat(cancelled).isTrue();
+    assertThat(streams.findActive("chat")).isEmpty();
+  }
+
+  private static ResumableStreams.Listener listener(
+      AtomicInteger notifications, List<Throwable> ends) {
+    return new ResumableStreams.Listener() {
+      @Override
+      public void onTokens() {
+        notifications.incrementAndGet();
+      }
+
+      @Override
+      public void onEnd(Throwable error) {
+        ends.add(error);
+      }
+    };
+  }
+
+  private static List<String> tokens(int from, int to) {
+    return IntStream.range(from, to).mapToObj(i -> "t" + i + " ").toList();
+  }
+}
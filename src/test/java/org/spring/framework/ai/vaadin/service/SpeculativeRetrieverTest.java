@@ -0,0 +1,87 @@
+package org.spring.framework.ai.vaadin.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.spring.framework.ai.vaadin.stub.HashingEmbeddingModel;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import reactor.core.scheduler.Schedulers;
+
+class SpeculativeRetrieverTest {
+
+  private static final String DRAFT = "How do I configure the vector store bean";
+
+  private final AtomicInteger rewrites = new AtomicInteger();
+  private final QueryTransformer rewrite =
+      query -> {
+        rewrites.incrementAndGet();
+        return query.mutate().text("rewritten: " + query.text()).build();
+      };
+
+  @Test
+  void skipsRewriteWhenSpeculationIsUsed() {
+    var retriever = retriever();
+    retriever.prefetch("chat", DRAFT);
+
+    var query = retriever.skipOnHit(rewrite).transform(query("chat", DRAFT + " please"));
+    var documents = retriever.retrieve(query);
+
+    assertThat(rewrites).hasValue(0);
+    assertThat(query.text()).isEqualTo(DRAFT + " please");
+    assertThat(documents).isNotEmpty();
+    assertThat(retriever.getStats().hits()).isEqualTo(1);
+    assertThat(retriever.getStats().misses()).isZero();
+  }
+
+  @Test
+  void rewritesAndSearchesWhenSubmittedTextDiffers() {
+    var retriever = retriever();
+    retriever.prefetch("chat", DRAFT);
+
+    var query =
+        retriever.skipOnHit(rewrite).transform(query("chat", "Which embedding models are there"));
+    retriever.retrieve(query);
+
+    assertThat(rewrites).hasValue(1);
+    assertThat(query.text()).startsWith("rewritten: ");
+    assertThat(retriever.getStats().hits()).isZero();
+    assertThat(retriever.getStats().misses()).isEqualTo(1);
+  }
+
+  @Test
+  void rewritesWithoutSpeculation() {
+    var retriever = retriever();
+
+    var query = retriever.skipOnHit(rewrite).transform(query("chat", DRAFT));
+    retriever.retrieve(query);
+
+    assertThat(rewrites).hasValue(1);
+    assertThat(retriever.getStats().misses()).isEqualTo(1);
+  }
+
+  private static SpeculativeRetriever retriever() {
+    var vectorStore = SimpleVectorStore.builder(new HashingEmbeddingModel()).build();
+    vectorStore.add(
+        List.of(
+            new Document(DRAFT + " in a configuration class"),
+            new Document("The vector store bean needs an embedding model")));
+    return new SpeculativeRetriever(
+        vectorStore, Schedulers.immediate(), 12, true, 12, 0.8, Duration.ofSeconds(2));
+  }
+
+  private static Query query(String chatId, String text) {
+    return Query.builder()
+        .text(text)
+        .context(
+            Map.of(ChatMemory.CONVERSATION_ID, chatId, SpeculativeRetriever.USER_TEXT_KEY, text))
+        .build();
+  }
+}
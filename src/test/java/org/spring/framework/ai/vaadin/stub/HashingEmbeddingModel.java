@@ -0,0 +1,103 @@
+package org.spring.framework.ai.vaadin.stub;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Locale;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Deterministic, offline stand-in for a real embedding model. Each word is hashed into one of a
+ * fixed number of dimensions (the "hashing trick") and the resulting vector is normalized, so
+ * texts sharing words get similar embeddings.
+ *
+ * <p>An optional latency is added to every embedding request to simulate a remote model.
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+  private final int dimensions;
+  private final Duration latency;
+
+  public HashingEmbeddingModel() {
+    this(384, Duration.ZERO);
+  }
+
+  public HashingEmbeddingModel(int dimensions, Duration latency) {
+    this.dimensions = dimensions;
+    this.latency = latency;
+  }
+
+  @Override
+  public EmbeddingResponse call(EmbeddingRequest request) {
+    simulateLatency();
+    var embeddings = new ArrayList<Embedding>();
+    for (int i = 0; i < request.getInstructions().size(); i++) {
+      embeddings.add(new Embedding(hashEmbedding(request.getInstructions().get(i)), i));
+    }
+    return new EmbeddingResponse(embeddings);
+  }
+
+  @Override
+  public float[] embed(Document document) {
+    return embed(document.getText());
+  }
+
+  @Override
+  public float[] embed(String text) {
+    simulateLatency();
+    return hashEmbedding(text);
+  }
+
+  @Override
+  public int dimensions() {
+    return dimensions;
+  }
+
+  private void simulateLatency() {
+    if (latency.isZero()) {
+      return;
+    }
+    try {
+      Thread.sleep(latency);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private float[] hashEmbedding(String text) {
+    var vector = new float[dimensions];
+    for (var word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+      if (word.isEmpty()) {
+        continue;
+      }
+      var hash = hash(word);
+      // Use one bit of the hash as the sign to keep collisions unbiased
+      vector[Math.floorMod(hash, dimensions)] += (hash & 1L << 40) == 0 ? 1 : -1;
+    }
+
+    var norm = 0.0;
+    for (var value : vector) {
+      norm += value * value;
+    }
+    if (norm > 0) {
+      var scale = (float) (1 / Math.sqrt(norm));
+      for (int i = 0; i < dimensions; i++) {
+        vector[i] *= scale;
+      }
+    }
+    return vector;
+  }
+
+  private static long hash(String word) {
+    var hash = 0xcbf29ce484222325L;
+    for (var b : word.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b;
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+}
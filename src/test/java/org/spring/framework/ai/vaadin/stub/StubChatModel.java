@@ -0,0 +1,113 @@
+package org.spring.framework.ai.vaadin.stub;
+
+import java.time.Duration;
+import java.util.List;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * Offline stand-in for a real chat model. Blocking calls answer query rewrite prompts with the
+ * original query, so retrieval searches for what the user asked, and streaming calls emit a fixed
+ * answer word by word.
+ *
+ * <p>Latency can be simulated: blocking calls and the first streamed token are delayed by the
+ * first-token latency, and subsequent tokens by the inter-token latency. Delays use timers instead
+ * of sleeping threads, so many concurrent streams are cheap to simulate.
+ */
+public class StubChatModel implements ChatModel {
+
+  // Markers around the query in the prompt template of RewriteQueryTransformer
+  private static final String ORIGINAL_QUERY = "Original query:";
+  private static final String REWRITTEN_QUERY = "Rewritten query:";
+
+  private static final String ANSWER =
+      """
+      Spring Boot auto-configuration looks at the classpath and the beans you have defined, and \
+      then configures the beans you are likely to need. For example:
+
+      ```java
+      @SpringBootApplication
+      public class Application {
+        public static void main(String[] args) {
+          SpringApplication.run(Application.class, args);
+        }
+      }
+      ```
+      """;
+
+  private final List<String> tokens;
+  private final Duration firstTokenLatency;
+  private final Duration interTokenLatency;
+
+  public StubChatModel() {
+    this(ANSWER, Duration.ZERO, Duration.ZERO);
+  }
+
+  public StubChatModel(String answer, Duration firstTokenLatency, Duration interTokenLatency) {
+    this.tokens = List.of(answer.split("(?<= )"));
+    this.firstTokenLatency = firstTokenLatency;
+    this.interTokenLatency = interTokenLatency;
+  }
+
+  /**
+   * Creates a stub that streams an answer of the given length.
+   *
+   * @param answerTokens Number of tokens in each answer
+   * @param firstTokenLatency Delay before the first token
+   * @param tokensPerSecond Rate at which the remaining tokens are streamed
+   * @return The stub chat model
+   */
+  public static StubChatModel withThroughput(
+      int answerTokens, Duration firstTokenLatency, double tokensPerSecond) {
+    var answer = new StringBuilder();
+    for (int i = 0; i < answerTokens; i++) {
+      answer.append(i % 12 == 11 ? "token.\n\n" : "token ");
+    }
+    return new StubChatModel(
+        answer.toString(),
+        firstTokenLatency,
+        Duration.ofNanos((long) (1_000_000_000L / tokensPerSecond)));
+  }
+
+  @Override
+  public ChatResponse call(Prompt prompt) {
+    if (!firstTokenLatency.isZero()) {
+      try {
+        Thread.sleep(firstTokenLatency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return response(originalQuery(prompt.getUserMessage().getText()));
+  }
+
+  @Override
+  public Flux<ChatResponse> stream(Prompt prompt) {
+    var stream = Flux.fromIterable(tokens);
+    if (!interTokenLatency.isZero()) {
+      stream = stream.delayElements(interTokenLatency);
+    }
+    if (!firstTokenLatency.isZero()) {
+      stream = stream.delaySubscription(firstTokenLatency);
+    }
+    return stream.map(StubChatModel::response);
+  }
+
+  /** Extracts the query from a rewrite prompt, or returns other prompts unchanged. */
+  private static String originalQuery(String text) {
+    var start = text.indexOf(ORIGINAL_QUERY);
+    var end = text.lastIndexOf(REWRITTEN_QUERY);
+    if (start < 0 || end < start) {
+      return text;
+    }
+    return text.substring(start + ORIGINAL_QUERY.length(), end).strip();
+  }
+
+  private static ChatResponse response(String text) {
+    return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+  }
+}
@@ -0,0 +1,120 @@
+package org.spring.framework.ai.vaadin.ui.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChatMessageTest {
+
+  private long now = Duration.ofSeconds(1).toNanos();
+  private final ChatMessage message = new ChatMessage("Assistant", null, null, () -> now);
+
+  @BeforeEach
+  void sendFirstText() {
+    // The first text replaces the typing indicator right away
+    assertThat(message.appendStreamingText("Hello")).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello");
+  }
+
+  @Test
+  void holdsTextUntilBlockIsComplete() {
+    advance(100);
+    assertThat(message.appendStreamingText(" world")).isFalse();
+    assertThat(message.appendStreamingText(" again.\n\nNext")).isTrue();
+
+    assertThat(message.getText()).isEqualTo("Hello world again.\n\n");
+    assertThat(message.finishStreaming()).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello world again.\n\nNext");
+  }
+
+  @Test
+  void doesNotFlushInsideOpenCodeFence() {
+    advance(100);
+    // Only the text before the fence is a complete block
+    assertThat(message.appendStreamingText(":\n```java\n")).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello:\n");
+
+    advance(100);
+    assertThat(message.appendStreamingText("int a = 1;\n")).isFalse();
+    assertThat(message.appendStreamingText("int b = 2;\n")).isFalse();
+
+    advance(100);
+    assertThat(message.appendStreamingText("```\n")).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello:\n```java\nint a = 1;\nint b = 2;\n```\n");
+  }
+
+  @Test
+  void recognizesFenceSplitAcrossTokens() {
+    advance(100);
+    assertThat(message.appendStreamingText("\n``")).isTrue();
+    advance(100);
+    assertThat(message.appendStreamingText("`\ncode\n")).isFalse();
+    assertThat(message.appendStreamingText("more\n")).isFalse();
+
+    assertThat(message.getText()).isEqualTo("Hello\n");
+  }
+
+  @Test
+  void flushesAtCharacterLimitInsideCodeFence() {
+    advance(100);
+    assertThat(message.appendStreamingText("\n```\n")).isTrue();
+    advance(1);
+    assertThat(message.appendStreamingText("x".repeat(1000))).isFalse();
+    // 1999 characters are pending, including the fence
+    assertThat(message.appendStreamingText("x".repeat(995))).isFalse();
+
+    assertThat(message.appendStreamingText("x")).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello\n```\n" + "x".repeat(1996));
+  }
+
+  @Test
+  void waitsForMinimumIntervalBetweenUpdates() {
+    advance(10);
+    assertThat(message.appendStreamingText(" world.\n")).isFalse();
+    advance(39);
+    assertThat(message.appendStreamingText("Next")).isFalse();
+
+    advance(1);
+    assertThat(message.appendStreamingText(" line")).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello world.\n");
+  }
+
+  @Test
+  void flushesPendingTextAfterMaximumDelay() {
+    advance(100);
+    assertThat(message.appendStreamingText(" world")).isFalse();
+
+    advance(149);
+    assertThat(message.flushIfDue()).isFalse();
+    assertThat(message.getText()).isEqualTo("Hello");
+
+    advance(1);
+    assertThat(message.flushIfDue()).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello world");
+    assertThat(message.flushIfDue()).isFalse();
+  }
+
+  @Test
+  void sendsEverythingWhenMoreTextArrivesAfterMaximumDelay() {
+    advance(250);
+
+    assertThat(message.appendStreamingText(" partial")).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello partial");
+  }
+
+  @Test
+  void finishReportsWhetherTextWasPending() {
+    assertThat(message.finishStreaming()).isFalse();
+
+    advance(10);
+    message.appendStreamingText(" world");
+    assertThat(message.finishStreaming()).isTrue();
+    assertThat(message.getText()).isEqualTo("Hello world");
+  }
+
+  private void advance(long millis) {
+    now += Duration.ofMillis(millis).toNanos();
+  }
+}